@@ -0,0 +1,123 @@
+package us.pojo.scheduling;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compares a new schedule against the assignments it was given to start from, so that only the students whose
+ * sessions actually changed need to be sent out again.
+ */
+public class AssignmentChanges {
+    public enum Type {
+        ADDED, REMOVED, MOVED
+    }
+
+    public static class Change {
+        private final String student;
+        private final int period;
+        private final Type type;
+        private final String previousClass;
+        private final String newClass;
+
+        Change(String student, int period, Type type, String previousClass, String newClass) {
+            this.student = student;
+            this.period = period;
+            this.type = type;
+            this.previousClass = previousClass;
+            this.newClass = newClass;
+        }
+
+        public String getStudent() {
+            return student;
+        }
+
+        public int getPeriod() {
+            return period;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getPreviousClass() {
+            return previousClass;
+        }
+
+        public String getNewClass() {
+            return newClass;
+        }
+    }
+
+    private final List<Change> changes = new ArrayList<>();
+    private final int numStudents;
+    private final Set<String> changedStudents = new HashSet<>();
+
+    public AssignmentChanges(Map<String, Map<Integer, String>> existing, List<Student> students, int numPeriods) {
+        Map<String, Map<Integer, String>> current = new TreeMap<>();
+        for (Student s : students) {
+            Map<Integer, String> assigned = new TreeMap<>();
+            s.assignments.forEach((period, a) -> assigned.put(period, a.name));
+            current.put(s.getName(), assigned);
+        }
+
+        Set<String> names = new TreeSet<>(current.keySet());
+        names.addAll(existing.keySet());
+        for (String name : names) {
+            Map<Integer, String> before = existing.getOrDefault(name, Collections.emptyMap());
+            Map<Integer, String> after = current.getOrDefault(name, Collections.emptyMap());
+            for (int period = 0; period < numPeriods; period++) {
+                String previousClass = before.get(period);
+                String newClass = after.get(period);
+                if (previousClass == null && newClass != null) {
+                    add(new Change(name, period, Type.ADDED, null, newClass));
+                } else if (previousClass != null && newClass == null) {
+                    add(new Change(name, period, Type.REMOVED, previousClass, null));
+                } else if (previousClass != null && !previousClass.equals(newClass)) {
+                    add(new Change(name, period, Type.MOVED, previousClass, newClass));
+                }
+            }
+        }
+        this.numStudents = names.size();
+    }
+
+    private void add(Change change) {
+        changes.add(change);
+        changedStudents.add(change.student);
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    private long count(Type type) {
+        return changes.stream().filter(c -> c.type == type).count();
+    }
+
+    public String getSummary() {
+        return changedStudents.size() + " of " + numStudents + " students changed: "
+                + count(Type.ADDED) + " added, " + count(Type.REMOVED) + " removed, " + count(Type.MOVED) + " moved.";
+    }
+
+    public byte[] toCsv(Map<String, Class> classes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PrintWriter report = new PrintWriter(out)) {
+            report.println("Name,Session,Change,Previous Class,New Class,New Location");
+            for (Change c : changes) {
+                String location = Optional.ofNullable(c.newClass).map(classes::get).map(Class::getLocation).orElse("");
+                report.println("\"" + c.student + "\"," + (c.period + 1) + "," + c.type + ",\""
+                        + Optional.ofNullable(c.previousClass).orElse("") + "\",\""
+                        + Optional.ofNullable(c.newClass).orElse("") + "\",\"" + location + "\"");
+            }
+        }
+        return out.toByteArray();
+    }
+}
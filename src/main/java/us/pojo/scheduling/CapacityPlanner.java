@@ -0,0 +1,235 @@
+package us.pojo.scheduling;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Looks for a cheap set of extra seats that gets the number of students missing classes down to a target.
+ * <p>
+ * Starting from a solved schedule, each step adds one seat to the cheapest full session that at least one student still
+ * missing classes could use, preferring the one the most of them could use when seats cost the same. An extra seat
+ * places at most one more student however many want it, so the cost of the seat is what matters. Instead of solving
+ * the whole schedule again for every seat, only the students who are still missing classes are placed again, keeping
+ * everyone else where they are.
+ * <p>
+ * This is a greedy approximation, not a search for the cheapest plan. A seat can end up placing nobody, if the
+ * students who could use it take a different choice first, and seats are never taken back out.
+ */
+public class CapacityPlanner {
+    public static class ClassLimit {
+        private Integer maxExtraSeats;
+        private Double costPerSeat;
+
+        public Integer getMaxExtraSeats() {
+            return maxExtraSeats;
+        }
+
+        public void setMaxExtraSeats(Integer maxExtraSeats) {
+            this.maxExtraSeats = maxExtraSeats;
+        }
+
+        public Double getCostPerSeat() {
+            return costPerSeat;
+        }
+
+        public void setCostPerSeat(Double costPerSeat) {
+            this.costPerSeat = costPerSeat;
+        }
+    }
+
+    /**
+     * What the planner is allowed to do. Limits apply per session of a class; classes that aren't listed use the
+     * defaults.
+     */
+    public static class Limits {
+        private int targetMissing = 0;
+        private int maxExtraSeats = 5;
+        private double costPerSeat = 1;
+        private Map<String, ClassLimit> classLimits = new HashMap<>();
+
+        public int getTargetMissing() {
+            return targetMissing;
+        }
+
+        public void setTargetMissing(int targetMissing) {
+            this.targetMissing = targetMissing;
+        }
+
+        public int getMaxExtraSeats() {
+            return maxExtraSeats;
+        }
+
+        public void setMaxExtraSeats(int maxExtraSeats) {
+            this.maxExtraSeats = maxExtraSeats;
+        }
+
+        public double getCostPerSeat() {
+            return costPerSeat;
+        }
+
+        public void setCostPerSeat(double costPerSeat) {
+            this.costPerSeat = costPerSeat;
+        }
+
+        public Map<String, ClassLimit> getClassLimits() {
+            return classLimits;
+        }
+
+        public void setClassLimits(Map<String, ClassLimit> classLimits) {
+            this.classLimits = classLimits;
+        }
+
+        int getMaxExtraSeats(String className) {
+            return Optional.ofNullable(classLimits.get(className)).map(ClassLimit::getMaxExtraSeats).orElse(maxExtraSeats);
+        }
+
+        double getCostPerSeat(String className) {
+            return Optional.ofNullable(classLimits.get(className)).map(ClassLimit::getCostPerSeat).orElse(costPerSeat);
+        }
+    }
+
+    public static class Plan {
+        private final Map<String, int[]> extraSeats = new TreeMap<>();
+        private double totalCost;
+        private int missingBefore;
+        private int missingAfter;
+        private boolean reachedTarget;
+
+        public Map<String, int[]> getExtraSeats() {
+            return extraSeats;
+        }
+
+        public double getTotalCost() {
+            return totalCost;
+        }
+
+        public int getMissingBefore() {
+            return missingBefore;
+        }
+
+        public int getMissingAfter() {
+            return missingAfter;
+        }
+
+        public boolean isReachedTarget() {
+            return reachedTarget;
+        }
+
+        public byte[] toCsv(Limits limits) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (PrintWriter report = new PrintWriter(out)) {
+                report.println("Class,Session,Extra Seats,Cost Per Seat,Cost");
+                extraSeats.forEach((className, seats) -> {
+                    for (int p = 0; p < seats.length; p++) {
+                        if (seats[p] > 0) {
+                            double cost = limits.getCostPerSeat(className);
+                            report.println(String.format("\"%s\",%d,%d,%.2f,%.2f", className, p + 1, seats[p], cost, cost * seats[p]));
+                        }
+                    }
+                });
+                report.println(String.format("\"Total\",,%d,,%.2f", extraSeats.values().stream().flatMapToInt(Arrays::stream).sum(), totalCost));
+                report.println(String.format("\"Students missing classes\",,%d -> %d,,%s", missingBefore, missingAfter,
+                        reachedTarget ? "target reached" : "target not reachable within the limits"));
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private final Limits limits;
+    private final int numPeriods;
+    private final BiConsumer<List<Student>, Map<String, Class>> placer;
+
+    /**
+     * @param placer places the given students into the open seats of the classes, without moving anyone already placed.
+     */
+    public CapacityPlanner(Limits limits, int numPeriods, BiConsumer<List<Student>, Map<String, Class>> placer) {
+        this.limits = limits;
+        this.numPeriods = numPeriods;
+        this.placer = placer;
+    }
+
+    public Plan plan(List<Student> students, Map<String, Class> classes) {
+        Plan plan = new Plan();
+        List<Student> missing = getStudentsMissingClasses(students);
+        plan.missingBefore = missing.size();
+
+        while (missing.size() > limits.getTargetMissing()) {
+            String bestClass = null;
+            int bestPeriod = -1;
+            double bestCost = 0;
+            int bestStudents = 0;
+            for (Map.Entry<Pair<String, Integer>, Integer> candidate : countUsefulSeats(missing, classes, plan).entrySet()) {
+                String className = candidate.getKey().getLeft();
+                double cost = limits.getCostPerSeat(className);
+                if (bestClass == null || cost < bestCost || (cost == bestCost && candidate.getValue() > bestStudents)) {
+                    bestClass = className;
+                    bestPeriod = candidate.getKey().getRight();
+                    bestCost = cost;
+                    bestStudents = candidate.getValue();
+                }
+            }
+
+            if (bestClass == null) {
+                break;
+            }
+
+            classes.get(bestClass).getPeriod(bestPeriod).maxStudents++;
+            plan.extraSeats.computeIfAbsent(bestClass, k -> new int[numPeriods])[bestPeriod]++;
+            plan.totalCost += limits.getCostPerSeat(bestClass);
+
+            // warm start: everyone keeps their seat, only the students still missing classes try again
+            missing.forEach(s -> s.nextChoice = 0);
+            placer.accept(missing, classes);
+            missing = getStudentsMissingClasses(missing);
+        }
+
+        plan.missingAfter = missing.size();
+        plan.reachedTarget = missing.size() <= limits.getTargetMissing();
+        return plan;
+    }
+
+    private List<Student> getStudentsMissingClasses(List<Student> students) {
+        return students.stream().filter(s -> s.isMissingClasses(numPeriods)).collect(Collectors.toList());
+    }
+
+    /**
+     * For every full session that still has room to grow, counts how many of the missing students could take a seat
+     * in it: they chose the class, aren't in it yet and have that session free.
+     */
+    private Map<Pair<String, Integer>, Integer> countUsefulSeats(List<Student> missing, Map<String, Class> classes, Plan plan) {
+        Map<Pair<String, Integer>, Integer> useful = new TreeMap<>();
+        for (Student s : missing) {
+            int[] sessions = s.getSessions(numPeriods).toArray();
+            List<String> assigned = new ArrayList<>();
+            s.assignments.values().forEach(a -> assigned.add(a.name));
+
+            for (String choice : s.choices) {
+                Class c = classes.get(choice);
+                if (c == null || assigned.contains(choice) || !c.acceptsGrade(s)) {
+                    continue;
+                }
+                int[] extra = plan.extraSeats.get(choice);
+                for (int p : sessions) {
+                    Class.Period period = c.getPeriod(p);
+                    boolean full = period.maxStudents > 0 && period.students.size() >= period.maxStudents;
+                    boolean canGrow = (extra == null ? 0 : extra[p]) < limits.getMaxExtraSeats(choice);
+                    if (!s.assignments.containsKey(p) && full && canGrow) {
+                        useful.merge(Pair.of(choice, p), 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        return useful;
+    }
+}
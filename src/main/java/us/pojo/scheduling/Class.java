@@ -5,12 +5,15 @@ import static java.util.stream.Collectors.toList;
 import static us.pojo.scheduling.CSVParser.parseLine;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.validator.routines.IntegerValidator;
 
 import us.pojo.scheduling.Class.Period.PeriodAssignment;
@@ -28,29 +31,45 @@ public class Class {
         }
         public int maxStudents;
         public List<PeriodAssignment> students = new ArrayList<>();
+        // seats are claimed here first so that students can be placed from several threads at once
+        private final AtomicInteger seatsTaken = new AtomicInteger();
         public Period(Period copy) {
             this(copy.maxStudents);
             students = new ArrayList<>(copy.students);
+            seatsTaken.set(students.size());
         }
         public Period(Integer maxStudents) {
             this.maxStudents = maxStudents == null ? 0 : maxStudents;
         }
-        public boolean addStudent(Student s) {
-            if (students.size() < maxStudents) {
-                students.add(new PeriodAssignment(s, false));
-                return true;
+        private boolean claimSeat() {
+            while (true) {
+                int taken = seatsTaken.get();
+                if (taken >= maxStudents) {
+                    return false;
+                }
+                if (seatsTaken.compareAndSet(taken, taken + 1)) {
+                    return true;
+                }
             }
-            return false;
         }
-        public boolean forceAddStudent(Student s) {
-            if (students.size() < maxStudents) {
-                students.add(new PeriodAssignment(s, true));
-                return true;
+        private boolean add(PeriodAssignment assignment) {
+            if (!claimSeat()) {
+                return false;
             }
-            return false;
+            synchronized (this) {
+                students.add(assignment);
+            }
+            return true;
+        }
+        public boolean addStudent(Student s) {
+            return add(new PeriodAssignment(s, false));
+        }
+        public boolean forceAddStudent(Student s) {
+            return add(new PeriodAssignment(s, true));
         }
         public void clear() {
             students = students.stream().filter(a->a.locked).collect(toList());
+            seatsTaken.set(students.size());
         }
     }
 
@@ -59,6 +78,7 @@ public class Class {
     public String location;
     public int minGrade;
     public boolean isCancelledWhenRaining;
+    public List<String> aliases = new ArrayList<>();
     
     public Class(Class copy) {
         this.name = copy.name;
@@ -66,6 +86,15 @@ public class Class {
         this.minGrade = copy.minGrade;
         this.location = copy.location;
         this.isCancelledWhenRaining = copy.isCancelledWhenRaining;
+        this.aliases = copy.aliases;
+    }
+    
+    public Class(String name, String location, int minGrade, boolean isCancelledWhenRaining, List<Integer> sessionSeats) {
+        this.name = name;
+        this.location = location;
+        this.minGrade = minGrade;
+        this.isCancelledWhenRaining = isCancelledWhenRaining;
+        this.periods = sessionSeats.stream().map(Period::new).collect(toList());
     }
     
     public String getName() {
@@ -98,9 +127,22 @@ public class Class {
         		.orElse(1);
         location = fields.get(header.get("location"));
         isCancelledWhenRaining = "1".equals(fields.get(header.get("iscancelledwhenraining")));
+        
+        // optional other names for the class that students might have written, separated by semicolons
+        Integer aliasColumn = header.get("aliases");
+        if (aliasColumn != null && aliasColumn < fields.size() && StringUtils.isNotBlank(fields.get(aliasColumn))) {
+            aliases = Arrays.stream(fields.get(aliasColumn).split(";")).map(String::trim).filter(StringUtils::isNotBlank).collect(toList());
+        }
     }
 
-    public int addStudent(Student s, Set<Integer> availablePeriods) {
+    public boolean acceptsGrade(Student s) {
+        return minGrade <= 1 || s.getGrade() >= minGrade;
+    }
+
+    public int addStudent(Student s, Collection<Integer> availablePeriods) {
+        if (!acceptsGrade(s)) {
+            return -1;
+        }
         for (int period : availablePeriods) {
             if (periods.get(period).addStudent(s)) {
             	s.assignToClass(period, name, false);
@@ -0,0 +1,84 @@
+package us.pojo.scheduling;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Matches what students typed (or what the form wrote) for a choice to a class in classes.csv.
+ * <p>
+ * Names are compared ignoring case and extra whitespace. If that doesn't find a class, anything from the first
+ * parenthesis on is ignored as well, so "Robotics (with Mr. Smith)" still finds "Robotics", unless more than one class
+ * has that name in front of its parenthesis. Classes can also list other names in an optional Aliases column, separated
+ * by semicolons. Each distinct string is only worked out once, and anything that doesn't match a class is remembered so it
+ * can be reported once instead of every time the solver comes across it.
+ */
+public class ClassNameResolver {
+    private static final Pattern PARENTHETICAL = Pattern.compile("\\s*\\(.*\\)\\s*$");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Map<String, String> byName = new HashMap<>();
+    private final Map<String, String> byBaseName = new HashMap<>();
+    private final Set<String> ambiguousBaseNames = new HashSet<>();
+    private final Map<String, Optional<String>> resolved = new ConcurrentHashMap<>();
+    private final Set<String> unknown = ConcurrentHashMap.newKeySet();
+
+    public ClassNameResolver(Map<String, Class> classes) {
+        // real names win over aliases that happen to normalize to the same thing
+        classes.keySet().forEach(name -> add(name, name));
+        classes.values().forEach(c -> c.aliases.forEach(alias -> add(alias, c.name)));
+        ambiguousBaseNames.forEach(byBaseName::remove);
+    }
+
+    private void add(String name, String className) {
+        byName.putIfAbsent(normalize(name), className);
+        String previous = byBaseName.putIfAbsent(getBaseName(name), className);
+        if (previous != null && !previous.equals(className)) {
+            ambiguousBaseNames.add(getBaseName(name));
+        }
+    }
+
+    static String normalize(String name) {
+        return WHITESPACE.matcher(name.trim()).replaceAll(" ").toLowerCase();
+    }
+
+    static String getBaseName(String name) {
+        return normalize(PARENTHETICAL.matcher(name).replaceFirst(""));
+    }
+
+    /**
+     * @return the name of the class in classes.csv, or empty if nothing matches
+     */
+    public Optional<String> resolve(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        return resolved.computeIfAbsent(name, raw -> {
+            Optional<String> match = lookup(raw);
+            if (!match.isPresent() && !raw.trim().isEmpty()) {
+                unknown.add(raw.trim());
+            }
+            return match;
+        });
+    }
+
+    /**
+     * Same as {@link #resolve}, but nothing is cached or remembered, for long running callers that get names from
+     * anyone who sends them.
+     */
+    public Optional<String> lookup(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(byName.getOrDefault(normalize(name), byBaseName.get(getBaseName(name))));
+    }
+
+    public Set<String> getUnknownNames() {
+        return new TreeSet<>(unknown);
+    }
+}
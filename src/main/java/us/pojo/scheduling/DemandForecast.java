@@ -0,0 +1,202 @@
+package us.pojo.scheduling;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Estimates how many students will compete for each class period before anyone is placed, so that the solver can
+ * skip choices that can never be satisfied and fill the most contested sessions first.
+ */
+public class DemandForecast {
+    private static class ClassDemand {
+        double[] demand;
+        int[] seats;
+        int requests;
+        int firstChoices;
+
+        ClassDemand(int numPeriods) {
+            demand = new double[numPeriods];
+            seats = new int[numPeriods];
+        }
+
+        int totalSeats() {
+            return IntStream.of(seats).sum();
+        }
+
+        double totalDemand() {
+            double total = 0;
+            for (double d : demand) {
+                total += d;
+            }
+            return total;
+        }
+
+        double ratio() {
+            int seats = totalSeats();
+            double demand = totalDemand();
+            if (demand == 0) {
+                // includes classes cancelled for rain and sessions already filled by locked students
+                return 0;
+            }
+            return seats == 0 ? Double.POSITIVE_INFINITY : demand / seats;
+        }
+    }
+
+    private final Map<String, Class> classes;
+    private final Map<String, ClassDemand> demandByClass = new HashMap<>();
+    private final int numPeriods;
+    private final List<Integer> sessionOrder;
+
+    public DemandForecast(Map<String, Class> classes, List<Student> students, int numPeriods) {
+        this.classes = classes;
+        this.numPeriods = numPeriods;
+
+        classes.forEach((name, c) -> {
+            ClassDemand d = new ClassDemand(numPeriods);
+            for (int i = 0; i < numPeriods && i < c.periods.size(); i++) {
+                Class.Period p = c.getPeriod(i);
+                d.seats[i] = Math.max(0, p.maxStudents - p.students.size());
+            }
+            demandByClass.put(name, d);
+        });
+
+        for (Student s : students) {
+            int needed = getNumNeededPeriods(s);
+            for (int rank = 0; rank < s.choices.size(); rank++) {
+                ClassDemand d = demandByClass.get(s.choices.get(rank));
+                if (d == null || !classes.get(s.choices.get(rank)).acceptsGrade(s)) {
+                    continue;
+                }
+                d.requests++;
+                if (rank == 0) {
+                    d.firstChoices++;
+                }
+
+                List<Integer> open = getOpenPeriods(s, d);
+                if (!open.isEmpty()) {
+                    // choices within the number of sessions the student needs are nearly certain to be attempted,
+                    // the rest only matter if something earlier was full.
+                    double weight = rank < needed ? 1.0 : needed / (rank + 1.0);
+                    for (int p : open) {
+                        d.demand[p] += weight / open.size();
+                    }
+                }
+            }
+        }
+
+        double[] sessionPressure = new double[numPeriods];
+        for (int p = 0; p < numPeriods; p++) {
+            double demand = 0;
+            int seats = 0;
+            for (ClassDemand d : demandByClass.values()) {
+                demand += d.demand[p];
+                seats += d.seats[p];
+            }
+            sessionPressure[p] = seats == 0 ? Double.POSITIVE_INFINITY : demand / seats;
+        }
+        sessionOrder = IntStream.range(0, numPeriods)
+                .boxed()
+                .sorted(Comparator.<Integer>comparingDouble(p -> -sessionPressure[p]).thenComparing(p -> p))
+                .collect(toList());
+    }
+
+    private int getNumNeededPeriods(Student s) {
+        return (int) s.getSessions(numPeriods).count();
+    }
+
+    private List<Integer> getOpenPeriods(Student s, ClassDemand d) {
+        return s.getSessions(numPeriods)
+                .filter(p -> d.seats[p] > 0)
+                .filter(p -> !s.assignments.containsKey(p))
+                .boxed()
+                .collect(toList());
+    }
+
+    /**
+     * A choice is hopeless when the class doesn't exist, the student is too young for it, or it has no seats in any
+     * session the student could attend.
+     */
+    public boolean isHopeless(Student s, String className) {
+        ClassDemand d = demandByClass.get(className);
+        return d == null || !classes.get(className).acceptsGrade(s) || getOpenPeriods(s, d).isEmpty();
+    }
+
+    /**
+     * A class is scarce when more students are expected to ask for it than it has seats left. Classes without any seats
+     * left aren't, there's nothing left to compete for.
+     */
+    public boolean isScarce(String className) {
+        ClassDemand d = demandByClass.get(className);
+        return d != null && d.totalSeats() > 0 && d.ratio() > 1.0;
+    }
+
+    /**
+     * Removes the choices that can never be satisfied, returning the names that were removed so they can be reported.
+     */
+    public Set<String> pruneHopelessChoices(Student s) {
+        Set<String> removed = new LinkedHashSet<>();
+        List<String> kept = new ArrayList<>(s.choices.size());
+        for (String choice : s.choices) {
+            if (isHopeless(s, choice)) {
+                removed.add(choice);
+            } else {
+                kept.add(choice);
+            }
+        }
+        if (!removed.isEmpty()) {
+            s.choices = kept;
+            s.nextChoice = 0;
+        }
+        return removed;
+    }
+
+    /**
+     * Orders the periods so that the most contested session is filled first, while the student still holds a choice
+     * that fits it. Quieter sessions have more open seats left over for later choices.
+     */
+    public List<Integer> orderPeriods(Collection<Integer> periods) {
+        return sessionOrder.stream().filter(periods::contains).collect(toList());
+    }
+
+    public byte[] toCsv() {
+        String sessionHeader = IntStream.range(1, numPeriods + 1)
+                .mapToObj(i -> "Session " + i + " Seats,Session " + i + " Demand")
+                .collect(joining(","));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PrintWriter report = new PrintWriter(out)) {
+            report.println("Name,Location,Seats,Demand,Demand Ratio,Requests,First Choices,Scarce," + sessionHeader);
+            demandByClass.entrySet().stream()
+                    .sorted(Comparator.<Map.Entry<String, ClassDemand>>comparingDouble(e -> -e.getValue().ratio())
+                            .thenComparing(Map.Entry::getKey))
+                    .forEach(e -> {
+                        ClassDemand d = e.getValue();
+                        String sessions = IntStream.range(0, numPeriods)
+                                .mapToObj(p -> d.seats[p] + "," + format(d.demand[p]))
+                                .collect(joining(","));
+                        report.println("\"" + e.getKey() + "\",\"" + StringUtils.defaultString(classes.get(e.getKey()).getLocation()) + "\","
+                                + d.totalSeats() + "," + format(d.totalDemand()) + "," + format(d.ratio()) + ","
+                                + d.requests + "," + d.firstChoices + "," + (isScarce(e.getKey()) ? "Y" : "N") + ","
+                                + sessions);
+                    });
+        }
+        return out.toByteArray();
+    }
+
+    private static String format(double d) {
+        return Double.isInfinite(d) ? "" : String.format("%.2f", d);
+    }
+}
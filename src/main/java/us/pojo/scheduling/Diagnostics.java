@@ -0,0 +1,200 @@
+package us.pojo.scheduling;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the messages from a scheduling run that end up in {@link Schedule#getMsg()}.
+ * <p>
+ * Every message has a {@link Code}, and the same code with the same details is only kept once with a count of how often
+ * it happened, so a warning from inside the placement loop doesn't get repeated for every retry. A single code keeps
+ * at most a tenth of {@code capacity} distinct messages, and at most {@code capacity} distinct messages are kept
+ * overall. Past that, the oldest message of whichever code has the most is dropped and only counted. The schedule
+ * headers and summary lines are left out of both limits and never dropped, there are only a few of them for each
+ * schedule.
+ * <p>
+ * Messages below the level are ignored before anything is formatted, as long as the callers pass the details as
+ * arguments instead of building the string themselves. Numbers passed as details are still boxed by the caller, which
+ * doesn't allocate for small numbers such as sessions but does for larger ones.
+ */
+public class Diagnostics {
+    public enum Level {
+        DEBUG, INFO, WARN
+    }
+
+    public enum Code {
+        SCHEDULE_STARTED(Level.INFO, "Running %s Schedule%n-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-", true),
+        PARSE_FAILED(Level.WARN, "Unable to read the input files: %s", true),
+        STUDENT_NOT_FOUND(Level.WARN, "Unable to find student %s"),
+        EXISTING_STUDENT_UNNAMED(Level.WARN, "Skipping line %s of the existing schedule, it doesn't have the student's name."),
+        CLASS_NOT_FOUND(Level.WARN, "Could not find class: %s for %s"),
+        EXISTING_CLASS_FULL(Level.WARN, "Could not keep %s in %s for session %s, it's already full."),
+        EXISTING_SESSION_UNAVAILABLE(Level.WARN, "Could not keep %s in %s for session %s, that session isn't open to them."),
+        UNKNOWN_CLASS(Level.WARN, "Unknown Class: %s"),
+        OVERSUBSCRIBED_CLASSES(Level.INFO, "Oversubscribed classes: %s", true),
+        INFEASIBLE_STUDENTS(Level.WARN, "%s students can't get a full schedule from their choices, such as %s.", true),
+        LOWER_BOUND(Level.INFO, "At least %s students will be missing classes.", true),
+        SHARDS(Level.INFO, "Solving %s independent groups of classes in parallel.", true),
+        BEST_RUN(Level.INFO, "Best run: %s", true),
+        CAPACITY_PLAN(Level.INFO, "Adding seats at a cost of %s gets the students missing classes from %s to %s.", true),
+        MISSING_CLASSES(Level.INFO, "%s students don't have full schedules%s", true),
+        ASSIGNMENT_CHANGES(Level.INFO, "%s", true),
+        RANDOMLY_ADDED(Level.INFO, "Randomly adding %s to class %s"),
+        RANDOM_CLASS_FULL(Level.WARN, "Tried to add %s to %s but it's full?"),
+        OUT_OF_CLASSES(Level.WARN, "Out of classes for period %s for %s");
+
+        private final Level level;
+        private final String format;
+        // headers and summaries come up once or twice a schedule and are never dropped to make room
+        private final boolean summary;
+
+        Code(Level level, String format) {
+            this(level, format, false);
+        }
+
+        Code(Level level, String format, boolean summary) {
+            this.level = level;
+            this.format = format;
+            this.summary = summary;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+    }
+
+    private static class Message {
+        private final int section;
+        private final Code code;
+        private final String[] details;
+
+        Message(int section, Code code, Object[] details) {
+            this.section = section;
+            this.code = code;
+            this.details = Arrays.stream(details).map(String::valueOf).toArray(String[]::new);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Message)) {
+                return false;
+            }
+            Message other = (Message) o;
+            return section == other.section && code == other.code && Arrays.equals(details, other.details);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * section + code.hashCode()) + Arrays.hashCode(details);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(code.format, (Object[]) details);
+        }
+    }
+
+    private volatile Level level;
+    private final int capacity;
+    private final int capacityPerCode;
+    private final Map<Message, Integer> messages = new LinkedHashMap<>();
+    // the distinct messages of each code, oldest first
+    private final Map<Code, Deque<Message>> byCode = new EnumMap<>(Code.class);
+    private final Map<Code, Integer> leftOut = new EnumMap<>(Code.class);
+    private long dropped;
+    private int section;
+
+    public Diagnostics(Level level, int capacity) {
+        this.level = level;
+        this.capacity = capacity;
+        this.capacityPerCode = Math.max(1, capacity / 10);
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    public boolean isEnabled(Code code) {
+        return code.level.compareTo(level) >= 0;
+    }
+
+    public void report(Code code) {
+        if (isEnabled(code)) {
+            add(code);
+        }
+    }
+
+    public void report(Code code, Object detail) {
+        if (isEnabled(code)) {
+            add(code, detail);
+        }
+    }
+
+    public void report(Code code, Object detail, Object other) {
+        if (isEnabled(code)) {
+            add(code, detail, other);
+        }
+    }
+
+    public void report(Code code, Object detail, Object other, Object another) {
+        if (isEnabled(code)) {
+            add(code, detail, other, another);
+        }
+    }
+
+    /**
+     * Repeats are only counted within a schedule, so the rain schedule gets its own copy of a warning from the normal one.
+     */
+    private synchronized void add(Code code, Object... details) {
+        if (code == Code.SCHEDULE_STARTED) {
+            section++;
+        }
+        Message message = new Message(section, code, details);
+        Deque<Message> distinct = byCode.computeIfAbsent(code, c -> new ArrayDeque<>());
+        if (!code.summary && !messages.containsKey(message) && distinct.size() >= capacityPerCode) {
+            leftOut.merge(code, 1, Integer::sum);
+            return;
+        }
+        if (messages.merge(message, 1, Integer::sum) == 1) {
+            distinct.add(message);
+        }
+        if (messages.size() > capacity) {
+            byCode.entrySet().stream()
+                    .filter(e -> !e.getKey().summary && !e.getValue().isEmpty())
+                    .map(Map.Entry::getValue)
+                    .max((a, b) -> Integer.compare(a.size(), b.size()))
+                    .ifPresent(noisiest -> dropped += messages.remove(noisiest.poll()));
+        }
+    }
+
+    /**
+     * How many times messages with the code were reported, leaving out any that have been dropped.
+     */
+    public synchronized int getCount(Code code) {
+        return messages.entrySet().stream().filter(e -> e.getKey().code == code).mapToInt(Map.Entry::getValue).sum();
+    }
+
+    public synchronized String render() {
+        StringBuilder msg = new StringBuilder();
+        if (dropped > 0) {
+            msg.append(dropped).append(" earlier messages were dropped.").append(System.lineSeparator());
+        }
+        messages.forEach((message, count) -> {
+            if (message.code == Code.SCHEDULE_STARTED && msg.length() > 0) {
+                msg.append(System.lineSeparator());
+            }
+            msg.append(message);
+            if (count > 1) {
+                msg.append(" (x").append(count).append(")");
+            }
+            msg.append(System.lineSeparator());
+        });
+        leftOut.forEach((code, count) -> msg.append(count).append(" more ").append(code).append(" messages were left out.")
+                .append(System.lineSeparator()));
+        return msg.toString();
+    }
+}
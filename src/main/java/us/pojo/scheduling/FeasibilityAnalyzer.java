@@ -0,0 +1,191 @@
+package us.pojo.scheduling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Works out, without running the solver, which students can never get a full schedule from their choices and a lower
+ * bound on how many students will be missing classes.
+ * <p>
+ * Each student is checked on their own by matching the sessions they still need against the distinct classes they
+ * chose that are open in those sessions. The global bound then matches every remaining student against the open seats
+ * one session at a time; anyone who can't be seated in some session can't have a full schedule either.
+ */
+public class FeasibilityAnalyzer {
+    private final List<Student> infeasibleStudents = new ArrayList<>();
+    private final int lowerBound;
+    private final long elapsedMillis;
+
+    public FeasibilityAnalyzer(Map<String, Class> classes, List<Student> students, int numPeriods) {
+        long start = System.currentTimeMillis();
+
+        List<String> classNames = new ArrayList<>(classes.keySet());
+        Map<String, Integer> classIds = new HashMap<>();
+        for (int i = 0; i < classNames.size(); i++) {
+            classIds.put(classNames.get(i), i);
+        }
+
+        List<Student> feasible = new ArrayList<>();
+        List<int[]> feasibleChoices = new ArrayList<>();
+        for (Student s : students) {
+            List<Integer> needed = getNeededPeriods(s, numPeriods);
+            if (needed.isEmpty()) {
+                continue;
+            }
+
+            int[] choices = getEligibleChoices(s, classes, classIds);
+            int[][] adj = new int[needed.size()][];
+            for (int i = 0; i < needed.size(); i++) {
+                int period = needed.get(i);
+                adj[i] = Arrays.stream(choices).filter(c -> hasSeats(classes.get(classNames.get(c)), period)).toArray();
+            }
+            int[] capacity = new int[classNames.size()];
+            Arrays.fill(capacity, 1);
+
+            if (maxMatching(adj, capacity) < needed.size()) {
+                infeasibleStudents.add(s);
+            } else {
+                feasible.add(s);
+                feasibleChoices.add(choices);
+            }
+        }
+
+        int worstPeriod = 0;
+        for (int period = 0; period < numPeriods; period++) {
+            List<int[]> adj = new ArrayList<>();
+            for (int i = 0; i < feasible.size(); i++) {
+                if (getNeededPeriods(feasible.get(i), numPeriods).contains(period)) {
+                    int p = period;
+                    adj.add(Arrays.stream(feasibleChoices.get(i))
+                            .filter(c -> hasSeats(classes.get(classNames.get(c)), p))
+                            .toArray());
+                }
+            }
+
+            int[] capacity = new int[classNames.size()];
+            for (int c = 0; c < classNames.size(); c++) {
+                capacity[c] = getOpenSeats(classes.get(classNames.get(c)), period);
+            }
+
+            worstPeriod = Math.max(worstPeriod, adj.size() - maxMatching(adj.toArray(new int[0][]), capacity));
+        }
+
+        this.lowerBound = infeasibleStudents.size() + worstPeriod;
+        this.elapsedMillis = System.currentTimeMillis() - start;
+    }
+
+    private static List<Integer> getNeededPeriods(Student s, int numPeriods) {
+        return s.getSessions(numPeriods)
+                .filter(p -> !s.assignments.containsKey(p))
+                .boxed()
+                .collect(Collectors.toList());
+    }
+
+    private static int[] getEligibleChoices(Student s, Map<String, Class> classes, Map<String, Integer> classIds) {
+        Set<String> assigned = new LinkedHashSet<>();
+        s.assignments.values().forEach(a -> assigned.add(a.name));
+        return s.choices.stream()
+                .distinct()
+                .filter(c -> !assigned.contains(c))
+                .filter(c -> classes.containsKey(c) && classes.get(c).acceptsGrade(s))
+                .mapToInt(classIds::get)
+                .toArray();
+    }
+
+    private static int getOpenSeats(Class c, int period) {
+        if (period >= c.periods.size()) {
+            return 0;
+        }
+        Class.Period p = c.getPeriod(period);
+        return Math.max(0, p.maxStudents - p.students.size());
+    }
+
+    private static boolean hasSeats(Class c, int period) {
+        return getOpenSeats(c, period) > 0;
+    }
+
+    /**
+     * Maximum matching of the left nodes onto right nodes that can each take up to {@code capacity} left nodes, using
+     * breadth first augmenting paths so that large rosters don't blow the stack.
+     */
+    static int maxMatching(int[][] adj, int[] capacity) {
+        int[] matchOf = new int[adj.length];
+        Arrays.fill(matchOf, -1);
+        List<List<Integer>> occupants = new ArrayList<>();
+        for (int i = 0; i < capacity.length; i++) {
+            occupants.add(new ArrayList<>());
+        }
+
+        int matched = 0;
+        int[] parentOfRight = new int[capacity.length];
+        int[] visitedRight = new int[capacity.length];
+        int[] visitedLeft = new int[adj.length];
+        int stamp = 0;
+        for (int root = 0; root < adj.length; root++) {
+            stamp++;
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(root);
+            visitedLeft[root] = stamp;
+            int end = -1;
+            while (!queue.isEmpty() && end == -1) {
+                int u = queue.poll();
+                for (int v : adj[u]) {
+                    if (visitedRight[v] == stamp) {
+                        continue;
+                    }
+                    visitedRight[v] = stamp;
+                    parentOfRight[v] = u;
+                    if (occupants.get(v).size() < capacity[v]) {
+                        end = v;
+                        break;
+                    }
+                    for (int w : occupants.get(v)) {
+                        if (visitedLeft[w] != stamp) {
+                            visitedLeft[w] = stamp;
+                            queue.add(w);
+                        }
+                    }
+                }
+            }
+
+            if (end != -1) {
+                // shift everyone along the path into the class they were reached from
+                int v = end;
+                while (true) {
+                    int u = parentOfRight[v];
+                    int previous = matchOf[u];
+                    if (previous != -1) {
+                        occupants.get(previous).remove(Integer.valueOf(u));
+                    }
+                    occupants.get(v).add(u);
+                    matchOf[u] = v;
+                    if (u == root) {
+                        break;
+                    }
+                    v = previous;
+                }
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    public List<Student> getInfeasibleStudents() {
+        return infeasibleStudents;
+    }
+
+    public int getLowerBound() {
+        return lowerBound;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
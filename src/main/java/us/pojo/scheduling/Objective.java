@@ -0,0 +1,128 @@
+package us.pojo.scheduling;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Scores a finished schedule so that solver runs can be compared on more than just the number of students missing
+ * classes. The score combines:
+ * <ul>
+ * <li>students missing classes (penalized)</li>
+ * <li>average happiness, the 0-100 choice rank score that is written to assignments.csv</li>
+ * <li>how unevenly the class sessions are filled, as the variance of the fill percentage (penalized)</li>
+ * </ul>
+ * The default weights rank runs by missing students first and only use happiness to break ties.
+ */
+public class Objective {
+    public static final double DEFAULT_MISSING_WEIGHT = 1000;
+    public static final double DEFAULT_HAPPINESS_WEIGHT = 1;
+    public static final double DEFAULT_BALANCE_WEIGHT = 0;
+    public static final Objective DEFAULT = new Objective(DEFAULT_MISSING_WEIGHT, DEFAULT_HAPPINESS_WEIGHT, DEFAULT_BALANCE_WEIGHT);
+
+    private final double missingWeight;
+    private final double happinessWeight;
+    private final double balanceWeight;
+
+    public Objective(double missingWeight, double happinessWeight, double balanceWeight) {
+        this.missingWeight = missingWeight;
+        this.happinessWeight = happinessWeight;
+        this.balanceWeight = balanceWeight;
+    }
+
+    public static Objective withWeights(Double missingWeight, Double happinessWeight, Double balanceWeight) {
+        return new Objective(
+                Optional.ofNullable(missingWeight).orElse(DEFAULT_MISSING_WEIGHT),
+                Optional.ofNullable(happinessWeight).orElse(DEFAULT_HAPPINESS_WEIGHT),
+                Optional.ofNullable(balanceWeight).orElse(DEFAULT_BALANCE_WEIGHT));
+    }
+
+    public static int getMaxHappinessScore(int numPeriods) {
+        int maxScore = 0;
+        for (int i = 0; i < numPeriods; i++) {
+            maxScore += (10 - i);
+        }
+        return maxScore;
+    }
+
+    public Evaluation evaluate(List<Student> students, Map<String, Class> classes) {
+        Evaluation e = new Evaluation(classes.values().stream().findFirst().map(c -> c.periods.size()).orElse(0));
+        students.forEach(e::add);
+        for (Class c : classes.values()) {
+            c.periods.forEach(e::add);
+        }
+        return e;
+    }
+
+    /**
+     * Totals for one schedule, worked out once when it's evaluated.
+     */
+    public class Evaluation {
+        private final int numPeriods;
+        private final int maxScore;
+        private final int firstGradeMaxScore;
+        private int numStudents;
+        private int numMissing;
+        private long totalHappiness;
+        private int numFilledPeriods;
+        private double totalFill;
+        private double totalFillSquared;
+
+        private Evaluation(int numPeriods) {
+            this.numPeriods = numPeriods;
+            this.maxScore = getMaxHappinessScore(numPeriods);
+            this.firstGradeMaxScore = getMaxHappinessScore(Math.min(3, numPeriods));
+        }
+
+        private void add(Student s) {
+            numStudents++;
+            totalHappiness += s.getHappinessScore(s.getGrade() != 1 ? maxScore : firstGradeMaxScore);
+            numMissing += s.isMissingClasses(numPeriods) ? 1 : 0;
+        }
+
+        private void add(Class.Period p) {
+            if (p.maxStudents <= 0) {
+                return;
+            }
+            double ratio = p.students.size() / (double) p.maxStudents;
+            numFilledPeriods++;
+            totalFill += ratio;
+            totalFillSquared += ratio * ratio;
+        }
+
+        public int getNumMissing() {
+            return numMissing;
+        }
+
+        public double getAverageHappiness() {
+            return numStudents == 0 ? 0 : totalHappiness / (double) numStudents;
+        }
+
+        public double getFillVariance() {
+            if (numFilledPeriods == 0) {
+                return 0;
+            }
+            double mean = totalFill / numFilledPeriods;
+            return Math.max(0, totalFillSquared / numFilledPeriods - mean * mean);
+        }
+
+        /**
+         * Higher is better. The fill variance is scaled to percentage points so that it's on the same scale as
+         * happiness.
+         */
+        public double getScore() {
+            return -missingWeight * numMissing
+                    + happinessWeight * getAverageHappiness()
+                    - balanceWeight * getFillVariance() * 100;
+        }
+
+        public boolean isBetterThan(Evaluation other) {
+            return other == null || getScore() > other.getScore();
+        }
+
+        public String toString() {
+            return String.format("score %.2f (%d missing, %.1f average happiness, %.4f fill variance)",
+                    getScore(), numMissing, getAverageHappiness(), getFillVariance());
+        }
+    }
+}
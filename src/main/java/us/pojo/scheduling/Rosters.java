@@ -0,0 +1,85 @@
+package us.pojo.scheduling;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Class lists for the teachers: one file per class and one per location, with the students in each session. They're
+ * built from the students held by each class session, so nobody has to sort assignments.csv by hand to make them.
+ */
+public class Rosters {
+    private static class Seat {
+        final Class clazz;
+        final int period;
+        final Student student;
+
+        Seat(Class clazz, int period, Student student) {
+            this.clazz = clazz;
+            this.period = period;
+            this.student = student;
+        }
+
+        String toCsv(boolean withClass) {
+            return (period + 1) + "," + (withClass ? "\"" + clazz.name + "\"," : "")
+                    + "\"" + StringUtils.defaultString(student.getLastName()) + "\",\"" + StringUtils.defaultString(student.getFirstName()) + "\","
+                    + student.getGrade() + ",\"" + StringUtils.defaultString(student.getTeacher()) + "\"";
+        }
+    }
+
+    private static final Comparator<Seat> BY_SESSION = Comparator.<Seat>comparingInt(s -> s.period)
+            .thenComparing(s -> s.clazz.name)
+            .thenComparing(s -> StringUtils.defaultString(s.student.getLastName()))
+            .thenComparing(s -> StringUtils.defaultString(s.student.getFirstName()));
+
+    private final Map<String, List<Seat>> byClass;
+    private final Map<String, List<Seat>> byLocation;
+
+    public Rosters(Map<String, Class> classes) {
+        List<Seat> seats = classes.values().parallelStream()
+                .flatMap(c -> IntStream.range(0, c.periods.size())
+                        .boxed()
+                        .flatMap(p -> c.getPeriod(p).students.stream().map(a -> new Seat(c, p, a.s))))
+                .sorted(BY_SESSION)
+                .collect(toList());
+        this.byClass = seats.stream().collect(groupingBy(s -> s.clazz.name, TreeMap::new, toList()));
+        this.byLocation = seats.stream().collect(groupingBy(s -> Optional.ofNullable(s.clazz.location).filter(StringUtils::isNotBlank).orElse("No Location"),
+                TreeMap::new, toList()));
+    }
+
+    /**
+     * The roster files, named classes/[class].csv and locations/[location].csv.
+     */
+    public Map<String, byte[]> toCsvFiles() {
+        Map<String, byte[]> files = new ConcurrentSkipListMap<>();
+        byClass.entrySet().parallelStream()
+                .forEach(e -> files.put("classes/" + toFileName(e.getKey()), toCsv("Session,Last Name,First Name,Grade,Teacher", e.getValue(), false)));
+        byLocation.entrySet().parallelStream()
+                .forEach(e -> files.put("locations/" + toFileName(e.getKey()), toCsv("Session,Class,Last Name,First Name,Grade,Teacher", e.getValue(), true)));
+        return files;
+    }
+
+    private static byte[] toCsv(String header, List<Seat> seats, boolean withClass) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PrintWriter roster = new PrintWriter(out)) {
+            roster.println(header);
+            seats.forEach(s -> roster.println(s.toCsv(withClass)));
+        }
+        return out.toByteArray();
+    }
+
+    private static String toFileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9 ._-]", "_").trim() + ".csv";
+    }
+}
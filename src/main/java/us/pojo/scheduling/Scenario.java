@@ -0,0 +1,259 @@
+package us.pojo.scheduling;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A "what if" change to the class schedule, such as adding seats to a session or cancelling a class, that can be
+ * solved alongside the real schedule to see how it would change the results.
+ */
+public class Scenario {
+    public static final String BASELINE = "Baseline";
+
+    public enum ChangeType {
+        SEATS, CANCELLED_WHEN_RAINING, REMOVE_CLASS, ADD_CLASS
+    }
+
+    public static class Change {
+        private ChangeType type;
+        private String className;
+        private int session;
+        private int seats;
+        private boolean cancelledWhenRaining;
+        private String location;
+        private int minGrade = 1;
+        private List<Integer> sessionSeats = new ArrayList<>();
+
+        public static Change addSeats(String className, int session, int seats) {
+            Change c = new Change();
+            c.type = ChangeType.SEATS;
+            c.className = className;
+            c.session = session;
+            c.seats = seats;
+            return c;
+        }
+
+        public static Change cancelledWhenRaining(String className, boolean cancelledWhenRaining) {
+            Change c = new Change();
+            c.type = ChangeType.CANCELLED_WHEN_RAINING;
+            c.className = className;
+            c.cancelledWhenRaining = cancelledWhenRaining;
+            return c;
+        }
+
+        public static Change removeClass(String className) {
+            Change c = new Change();
+            c.type = ChangeType.REMOVE_CLASS;
+            c.className = className;
+            return c;
+        }
+
+        public static Change addClass(String className, String location, int minGrade, boolean cancelledWhenRaining, Integer... sessionSeats) {
+            Change c = new Change();
+            c.type = ChangeType.ADD_CLASS;
+            c.className = className;
+            c.location = location;
+            c.minGrade = minGrade;
+            c.cancelledWhenRaining = cancelledWhenRaining;
+            c.sessionSeats = Arrays.asList(sessionSeats);
+            return c;
+        }
+
+        /**
+         * Applies the change to the classes, returning a note if it couldn't be applied as asked.
+         */
+        String apply(Map<String, Class> classes) {
+            Class c = classes.get(className);
+            if (type == null) {
+                return "Change for " + className + " is missing its type";
+            }
+            if (c == null && type != ChangeType.ADD_CLASS) {
+                return "Unknown Class: " + className;
+            }
+
+            switch (type) {
+            case SEATS:
+                if (session < 1 || session > c.periods.size()) {
+                    return className + " has no session " + session;
+                }
+                Class.Period p = c.getPeriod(session - 1);
+                p.maxStudents = Math.max(0, p.maxStudents + seats);
+                break;
+            case CANCELLED_WHEN_RAINING:
+                c.isCancelledWhenRaining = cancelledWhenRaining;
+                break;
+            case REMOVE_CLASS:
+                classes.remove(className);
+                break;
+            case ADD_CLASS:
+                int numPeriods = classes.values().stream().findFirst().map(existing -> existing.periods.size()).orElse(sessionSeats.size());
+                List<Integer> seats = new ArrayList<>(sessionSeats);
+                while (seats.size() < numPeriods) {
+                    seats.add(0);
+                }
+                classes.put(className, new Class(className, location, minGrade, cancelledWhenRaining, seats.subList(0, numPeriods)));
+                if (c != null) {
+                    return "Replaced existing class " + className;
+                }
+                break;
+            }
+            return null;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        public void setType(ChangeType type) {
+            this.type = type;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public void setClassName(String className) {
+            this.className = className;
+        }
+
+        public int getSession() {
+            return session;
+        }
+
+        public void setSession(int session) {
+            this.session = session;
+        }
+
+        public int getSeats() {
+            return seats;
+        }
+
+        public void setSeats(int seats) {
+            this.seats = seats;
+        }
+
+        public boolean isCancelledWhenRaining() {
+            return cancelledWhenRaining;
+        }
+
+        public void setCancelledWhenRaining(boolean cancelledWhenRaining) {
+            this.cancelledWhenRaining = cancelledWhenRaining;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public void setLocation(String location) {
+            this.location = location;
+        }
+
+        public int getMinGrade() {
+            return minGrade;
+        }
+
+        public void setMinGrade(int minGrade) {
+            this.minGrade = minGrade;
+        }
+
+        public List<Integer> getSessionSeats() {
+            return sessionSeats;
+        }
+
+        public void setSessionSeats(List<Integer> sessionSeats) {
+            this.sessionSeats = sessionSeats;
+        }
+    }
+
+    public static class Result {
+        private final String name;
+        private final Objective.Evaluation normal;
+        private final Objective.Evaluation rain;
+        private final List<String> notes;
+
+        public Result(String name, Objective.Evaluation normal, Objective.Evaluation rain, List<String> notes) {
+            this.name = name;
+            this.normal = normal;
+            this.rain = rain;
+            this.notes = notes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Objective.Evaluation getNormal() {
+            return normal;
+        }
+
+        public Objective.Evaluation getRain() {
+            return rain;
+        }
+
+        public List<String> getNotes() {
+            return notes;
+        }
+    }
+
+    private String name;
+    private List<Change> changes = new ArrayList<>();
+
+    public Scenario() {
+
+    }
+
+    public Scenario(String name, Change... changes) {
+        this.name = name;
+        this.changes.addAll(Arrays.asList(changes));
+    }
+
+    public List<String> apply(Map<String, Class> classes) {
+        return changes.stream()
+                .map(c -> c.apply(classes))
+                .filter(note -> note != null)
+                .distinct()
+                .collect(toList());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<Change> changes) {
+        this.changes = changes;
+    }
+
+    public static byte[] toCsv(List<Result> results) {
+        Result baseline = results.get(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PrintWriter report = new PrintWriter(out)) {
+            report.println("Scenario,Missing,Missing Change,Average Happiness,Rain Missing,Rain Missing Change,Rain Average Happiness,Notes");
+            for (Result r : results) {
+                report.println(String.format("\"%s\",%d,%+d,%.1f,%d,%+d,%.1f,\"%s\"",
+                        r.name,
+                        r.normal.getNumMissing(),
+                        r.normal.getNumMissing() - baseline.normal.getNumMissing(),
+                        r.normal.getAverageHappiness(),
+                        r.rain.getNumMissing(),
+                        r.rain.getNumMissing() - baseline.rain.getNumMissing(),
+                        r.rain.getAverageHappiness(),
+                        String.join("; ", r.notes)));
+            }
+        }
+        return out.toByteArray();
+    }
+}
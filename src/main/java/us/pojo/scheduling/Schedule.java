@@ -1,5 +1,7 @@
 package us.pojo.scheduling;
 
+import java.util.Map;
+
 public class Schedule {
 	private byte[] assignments;
 	private byte[] rainAssignments;
@@ -7,6 +9,14 @@ public class Schedule {
 	private byte[] rainClassSizes;
 	private long studentsMissingAssignments;
 	private String msg;
+	private byte[] demandReport;
+	private byte[] rainDemandReport;
+	private byte[] scenarioReport;
+	private byte[] capacityPlanReport;
+	private byte[] assignmentChanges;
+	private byte[] rainAssignmentChanges;
+	private Map<String, byte[]> rosters;
+	private Map<String, byte[]> rainRosters;
 	
 	public Schedule(byte[] assignments, byte[] classSizes, byte[] rainAssignments, byte[] rainClassSizes, long studentsMissingAssignments, String msg) {
 		this.assignments = assignments;
@@ -44,4 +54,68 @@ public class Schedule {
 	public byte[] getRainAssignments() {
 		return rainAssignments;
 	}
+
+	public byte[] getDemandReport() {
+		return demandReport;
+	}
+
+	public void setDemandReport(byte[] demandReport) {
+		this.demandReport = demandReport;
+	}
+
+	public byte[] getRainDemandReport() {
+		return rainDemandReport;
+	}
+
+	public void setRainDemandReport(byte[] rainDemandReport) {
+		this.rainDemandReport = rainDemandReport;
+	}
+
+	public byte[] getScenarioReport() {
+		return scenarioReport;
+	}
+
+	public void setScenarioReport(byte[] scenarioReport) {
+		this.scenarioReport = scenarioReport;
+	}
+
+	public byte[] getCapacityPlanReport() {
+		return capacityPlanReport;
+	}
+
+	public void setCapacityPlanReport(byte[] capacityPlanReport) {
+		this.capacityPlanReport = capacityPlanReport;
+	}
+
+	public byte[] getAssignmentChanges() {
+		return assignmentChanges;
+	}
+
+	public void setAssignmentChanges(byte[] assignmentChanges) {
+		this.assignmentChanges = assignmentChanges;
+	}
+
+	public byte[] getRainAssignmentChanges() {
+		return rainAssignmentChanges;
+	}
+
+	public void setRainAssignmentChanges(byte[] rainAssignmentChanges) {
+		this.rainAssignmentChanges = rainAssignmentChanges;
+	}
+
+	public Map<String, byte[]> getRosters() {
+		return rosters;
+	}
+
+	public void setRosters(Map<String, byte[]> rosters) {
+		this.rosters = rosters;
+	}
+
+	public Map<String, byte[]> getRainRosters() {
+		return rainRosters;
+	}
+
+	public void setRainRosters(Map<String, byte[]> rainRosters) {
+		this.rainRosters = rainRosters;
+	}
 }
@@ -1,6 +1,7 @@
 package us.pojo.scheduling;
 
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.partitioningBy;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
@@ -20,14 +21,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -36,20 +40,41 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import com.amazonaws.util.IOUtils;
 
-import us.pojo.scheduling.Class.Period;
+import us.pojo.scheduling.Diagnostics.Code;
 import us.pojo.scheduling.Student.Assignment;
 
 public class Scheduling {
+    public enum Strategy {
+        /** greedy passes in priority order, restarted with rearranged choices up to 100 times or until the feasibility lower bound is reached */
+        GREEDY,
+        /** a single pass of student proposing deferred acceptance, much faster but more students miss classes, see {@link DeferredAcceptance} */
+        DEFERRED_ACCEPTANCE
+    }
+
     private Map<String, Class> classes;
     private Map<String, Class> rainClasses;
     private List<Student> students;
     private List<Student> rainStudents;
+    private Map<String, Map<Integer, String>> existingAssignments = new HashMap<>();
+    private Map<String, Map<Integer, String>> existingRainAssignments = new HashMap<>();
+    private static final int STUDENT_CHUNK_SIZE = 2048;
+    private static final int MIN_PARALLEL_TIER_SIZE = 256;
+    private static final Pattern SESSION_COLUMN = Pattern.compile("session (\\d+)");
     private int numChoices = 10;
-    private ByteArrayOutputStream errStream = new ByteArrayOutputStream();
-    private PrintWriter err = new PrintWriter(errStream);
+    private static final int MAX_DIAGNOSTICS = 1000;
+    private static final int INFEASIBLE_SAMPLE = 5;
+    private final Diagnostics diagnostics = new Diagnostics(Diagnostics.Level.INFO, MAX_DIAGNOSTICS);
     private boolean randomlyFillMissingClasses = false;
+    private Objective objective = Objective.DEFAULT;
+    private boolean sharded = true;
+    private boolean parallelPlacement = false;
+    private Strategy strategy = Strategy.GREEDY;
+    private boolean rainClassesDerived = false;
+    private List<Scenario> scenarios = new ArrayList<>();
+    private Set<String> unknownChoices = new TreeSet<>();
+    private CapacityPlanner.Limits capacityLimits;
 
-    private BufferedReader getReader(InputStream file) throws IOException {
+    private static BufferedReader getReader(InputStream file) throws IOException {
         if (file == null) {
             return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(new byte[0])));
         } else {
@@ -63,7 +88,45 @@ public class Scheduling {
     	this.randomlyFillMissingClasses = randomlyFillMissingClasses;
     }
 
-    private Map<String, Class> parseClassFile(BufferedReader classFile) throws IOException {
+    public void setObjective(Objective objective) {
+        this.objective = objective;
+    }
+
+    public void setSharded(boolean sharded) {
+        this.sharded = sharded;
+    }
+
+    /**
+     * Places students that have the same priority in parallel. Faster on very large rosters, but which of two equal
+     * students gets the last seat in a class is no longer the same from run to run.
+     */
+    public void setParallelPlacement(boolean parallelPlacement) {
+        this.parallelPlacement = parallelPlacement;
+    }
+
+    public void setDiagnosticLevel(Diagnostics.Level level) {
+        diagnostics.setLevel(level != null ? level : Diagnostics.Level.INFO);
+    }
+
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy != null ? strategy : Strategy.GREEDY;
+    }
+
+    public void setScenarios(List<Scenario> scenarios) {
+        this.scenarios = scenarios != null ? scenarios : new ArrayList<>();
+    }
+
+    public void setCapacityLimits(CapacityPlanner.Limits capacityLimits) {
+        this.capacityLimits = capacityLimits;
+    }
+
+    public static Map<String, Class> parseClasses(InputStream classStream) throws IOException {
+        try (BufferedReader classFile = getReader(classStream)) {
+            return parseClassFile(classFile);
+        }
+    }
+
+    private static Map<String, Class> parseClassFile(BufferedReader classFile) throws IOException {
     	if (!classFile.ready()) {
     		throw new RuntimeException("Unable to parse classes.csv, file not provided.");
     	}
@@ -79,21 +142,41 @@ public class Scheduling {
         return classes.stream().filter(c->StringUtils.isNotBlank(c.name)).collect(toMap(c->c.name, c->c));
     }
     
-    private boolean parseExistingStudents(Map<String, Class> classes, Map<String, Student> students, BufferedReader existingFile) throws IOException {
+    private boolean parseExistingStudents(Map<String, Class> classes, Map<String, Student> students, Map<String, Map<Integer, String>> existing, BufferedReader existingFile) throws IOException {
     	if (existingFile.ready()) {
+	        ClassNameResolver resolver = new ClassNameResolver(classes);
 	        List<String> existingHeader = CSVParser.parseLine(existingFile.readLine());
+	        List<String> studentHeader = toStudentHeader(existingHeader);
 	        AtomicInteger existingStudentLine = new AtomicInteger(1);
 	        existingFile.lines().forEach(line->{
 	            List<String> fields = CSVParser.parseLine(line);
 	            Map<String, String> mapping = new HashMap<>();
 	            for (int i = 0; i < existingHeader.size() && i < fields.size(); i++) {
-	                mapping.put(existingHeader.get(i), fields.get(i));
+	                mapping.put(existingHeader.get(i).toLowerCase(), fields.get(i));
+	            }
+	            
+	            // either a single name column, or the first and last name columns written to assignments.csv
+	            String name = mapping.containsKey("name") ? mapping.get("name")
+	                    : StringUtils.isAnyBlank(mapping.get("first name"), mapping.get("last name")) ? null : mapping.get("first name") + " " + mapping.get("last name");
+	            int lineNum = existingStudentLine.getAndIncrement();
+	            if (StringUtils.isBlank(name)) {
+	                diagnostics.report(Code.EXISTING_STUDENT_UNNAMED, lineNum);
+	                return;
 	            }
-	            Student s = students.get(mapping.get("name"));
+	            Map<Integer, String> assigned = new TreeMap<>();
+	            mapping.forEach((column, value)->{
+	                Matcher m = SESSION_COLUMN.matcher(column);
+	                if (m.matches() && StringUtils.isNotBlank(value)) {
+	                    assigned.put(Integer.parseInt(m.group(1)) - 1, resolver.resolve(value).orElse(value));
+	                }
+	            });
+	            existing.put(name, assigned);
+	            
+	            Student s = students.get(name);
 	            if (s == null) {
-	                err.println("Unable to find student " + mapping.get("name"));
-	                s = new Student(existingHeader, line, existingStudentLine.getAndIncrement());
-	                students.put(s.getName(), s);
+	                diagnostics.report(Code.STUDENT_NOT_FOUND, name);
+	                s = new Student(studentHeader, line, lineNum);
+	                students.put(name, s);
 	            }
 	        });
 	        return true;
@@ -102,21 +185,51 @@ public class Scheduling {
     	return false;
     }
     
-    private Map<String, Student> parseStudents(BufferedReader studentFile) throws IOException {
+    /**
+     * assignments.csv and the registration export call the name columns "First Name" and "Last Name", where students.csv
+     * has "Student First Name" and "Student Last Name".
+     */
+    private static List<String> toStudentHeader(List<String> header) {
+        return header.stream()
+                .map(h->h.equalsIgnoreCase("first name") || h.equalsIgnoreCase("last name") ? "Student " + h : h)
+                .collect(toList());
+    }
+    
+    private Map<String, Student> parseStudents(BufferedReader studentFile, ClassNameResolver resolver) throws IOException {
         List<String> header = Arrays.asList(studentFile.readLine().split(","));
-        AtomicInteger studentLine = new AtomicInteger(1);
-        Map<String, Student> students = studentFile.lines()
-        		.map(l->new Student(header, l, studentLine.getAndIncrement())).filter(s->s.choices.size() > 0)
-        		.collect(toMap(s->s.getName(), s->s, (a,b)->{
-        			if (a.choices.size() < b.choices.size()) {
-        				return b;
-        			} else {
-        				return a;
-        			}
-        		}));
+        List<String> lines = studentFile.lines().collect(toList());
+        
+        // each line is one record, so the file can be cut into chunks anywhere between lines and parsed in parallel.
+        // merging the chunks back in file order keeps the same student as parsing it line by line would.
+        int numChunks = (lines.size() + STUDENT_CHUNK_SIZE - 1) / STUDENT_CHUNK_SIZE;
+        List<Map<String, Student>> chunks = IntStream.range(0, numChunks).parallel()
+                .mapToObj(chunk->{
+                    Map<String, Student> parsed = new LinkedHashMap<>();
+                    int start = chunk * STUDENT_CHUNK_SIZE;
+                    for (int i = start; i < Math.min(lines.size(), start + STUDENT_CHUNK_SIZE); i++) {
+                        Student s = new Student(header, lines.get(i), i + 1);
+                        if (s.choices.size() > 0) {
+                            s.resolveChoices(resolver);
+                            parsed.merge(s.getName(), s, Scheduling::keepStudentWithMoreChoices);
+                        }
+                    }
+                    return parsed;
+                })
+                .collect(toList());
 
+        Map<String, Student> students = new HashMap<>();
+        chunks.forEach(chunk->chunk.forEach((name, s)->students.merge(name, s, Scheduling::keepStudentWithMoreChoices)));
         return students;
     }
+    
+    private static Student keepStudentWithMoreChoices(Student a, Student b) {
+        if (a.choices.size() < b.choices.size()) {
+            return b;
+        } else {
+            return a;
+        }
+    }
+    
     private void parse(InputStream classStream, InputStream rainClassStream, InputStream studentStream, InputStream existingScheduleStream, InputStream existingRainScheduleStream) {
         try(BufferedReader classFile = getReader(classStream);
         	BufferedReader rainClassFile = getReader(classStream);
@@ -130,11 +243,16 @@ public class Scheduling {
             	// if not rain schedule was specified, derive one
             	this.rainClasses = copyClasses(this.classes);
             	rainClasses.values().forEach(Class::clearForRainSchedule);
+            	rainClassesDerived = true;
             } else {
             	rainClasses = parseClassFile(rainClassFile);
             }
 
-            Map<String, Student> students = parseStudents(studentFile);
+            // class names are matched up once here, anything that doesn't match is reported here instead of by every solve
+            ClassNameResolver resolver = new ClassNameResolver(classes);
+            Map<String, Student> students = parseStudents(studentFile, resolver);
+            unknownChoices = resolver.getUnknownNames();
+            unknownChoices.forEach(name->diagnostics.report(Code.UNKNOWN_CLASS, name));
             Map<String, Student> rainStudents = new HashMap<>();
             
             // deep copy the students over to the rain status
@@ -142,36 +260,51 @@ public class Scheduling {
             	rainStudents.put(name, new Student(obj));
             });
             
-            parseExistingStudents(classes, students, existingFile);
-            boolean existingRainStudents = parseExistingStudents(rainClasses, rainStudents, existingRainFile);
+            parseExistingStudents(classes, students, existingAssignments, existingFile);
+            boolean existingRainStudents = parseExistingStudents(rainClasses, rainStudents, existingRainAssignments, existingRainFile);
+            lockExistingAssignments(students, existingAssignments);
+            lockExistingAssignments(rainStudents, existingRainAssignments);
 
             this.students = new ArrayList<>(students.values());
             this.rainStudents = existingRainStudents ? new ArrayList<>(rainStudents.values()) : null;
         } catch (Exception e) {
-            e.printStackTrace(err);
+            diagnostics.report(Code.PARSE_FAILED, e);
         }
     }
     
-    private void forceAddStudentsToClasses(Student s, Map<String, Class> classes) {
+    /**
+     * Existing assignments (from an earlier run, or from seats reserved during registration) are kept as they are, the
+     * solver only fills in the sessions around them. They're only held on to here, {@link #forceAddStudentsToClasses}
+     * drops any that can't actually get a seat.
+     */
+    private void lockExistingAssignments(Map<String, Student> students, Map<String, Map<Integer, String>> existing) {
+        existing.forEach((name, assigned)->{
+            Student s = students.get(name);
+            if (s != null) {
+                assigned.forEach((period, className)->s.assignToClass(period, className, true));
+            }
+        });
+    }
+    
+    private void forceAddStudentsToClasses(Student s, Map<String, Class> classes, Diagnostics diagnostics) {
         if (s != null) {
-            for (int i = 0; i < 6; i++) {
-                String c = Optional.ofNullable(s.assignments.get(i)).map(a->a.name).orElse(null);
-                
-                // some first graders were accidentally assigned classes after before 4th period, clean these out.
-                if (s.isInFirstGrade() && i < 3) {
+            for (int i : new ArrayList<>(s.assignments.keySet())) {
+                String c = s.assignments.remove(i).name;
+                if (StringUtils.isBlank(c)) {
                     continue;
                 }
                 
-                if (StringUtils.isNotBlank(c)) {
-                    Class clazz = classes.get(c);
-                    if (clazz == null) {
-                        err.println("Could not find class: " + c + " for " + s.getName());
-                    } else {
-                        Period p = clazz.getPeriod(i);
-                        if (p != null && p.forceAddStudent(s)) {
-                            s.assignments.put(i, new Assignment(c, true));
-                        }
-                    }
+                Class clazz = classes.get(c);
+                if (clazz == null) {
+                    diagnostics.report(Code.CLASS_NOT_FOUND, c, s);
+                } else if (i >= clazz.periods.size() || clazz.getPeriod(i).maxStudents == 0 || s.getSessions(getNumPeriods(classes)).noneMatch(p->p == i)) {
+                    // some first graders were accidentally assigned classes after before 4th period, clean these out.
+                    diagnostics.report(Code.EXISTING_SESSION_UNAVAILABLE, s, c, i + 1);
+                } else if (clazz.getPeriod(i).forceAddStudent(s)) {
+                    // the assignment is only locked once the seat has been claimed
+                    s.assignments.put(i, new Assignment(c, true));
+                } else {
+                    diagnostics.report(Code.EXISTING_CLASS_FULL, s, c, i + 1);
                 }
             }
             s.removeChoicesThatAreAlreadyAssigned();
@@ -180,34 +313,65 @@ public class Scheduling {
     }
     
     public void everyoneGetsFirstChoice(List<Student> students, Map<String,Class> classes) {
+        everyoneGetsFirstChoice(students, classes, null);
+    }
+
+    public void everyoneGetsFirstChoice(List<Student> students, Map<String,Class> classes, DemandForecast forecast) {
+        everyoneGetsFirstChoice(students, classes, forecast, diagnostics);
+    }
+
+    private void everyoneGetsFirstChoice(List<Student> students, Map<String,Class> classes, DemandForecast forecast, Diagnostics diagnostics) {
         Collections.sort(students);
         int numPeriods = getNumPeriods(classes);
+        List<List<Student>> tiers = parallelPlacement ? getPriorityTiers(students) : Collections.singletonList(students);
         
         for (int i = 0; i < numChoices; i++) {
-            for(Student s: students) {
-                int period = -1;
-                int availablePeriods = s.isInFirstGrade() ? 3 : numPeriods;
-                int startingPeriod = s.isInFirstGrade() ? 3 : 0;
-                while (period == -1 && s.hasMoreChoices(startingPeriod, availablePeriods)) {
-                    String className = s.getNextChoice();
-                    Set<Integer> available = IntStream.range(startingPeriod, startingPeriod + availablePeriods).filter(p->!s.assignments.containsKey(p)).mapToObj(p->p).collect(toSet());
-                    if (!available.isEmpty()) {
-	                    Class c = classes.get(className);
-	                    if (c == null || StringUtils.isBlank(className)) {
-	                        err.println("Unknown Class: " + className);
-	                    } else {
-	                        period = c.addStudent(s, available);
-	                    }
-                    }
+            for (List<Student> tier : tiers) {
+                // students in the same tier are equal to each other, so it doesn't matter which of them gets a seat first
+                if (parallelPlacement && tier.size() >= MIN_PARALLEL_TIER_SIZE) {
+                    tier.parallelStream().forEach(s->placeNextChoice(s, classes, forecast, numPeriods, diagnostics));
+                } else {
+                    tier.forEach(s->placeNextChoice(s, classes, forecast, numPeriods, diagnostics));
                 }
-                
-//                if (period == -1) {
-//                	System.out.println(s.getName() + " does not have all their classes.");
-//                }
             }
         }
     }
     
+    private void placeNextChoice(Student s, Map<String,Class> classes, DemandForecast forecast, int numPeriods, Diagnostics diagnostics) {
+        int period = -1;
+        while (period == -1 && s.hasMoreChoices(numPeriods)) {
+            String className = s.getNextChoice();
+            Set<Integer> available = s.getSessions(numPeriods).filter(p->!s.assignments.containsKey(p)).mapToObj(p->p).collect(toSet());
+            if (!available.isEmpty()) {
+                Class c = classes.get(className);
+                if (c == null || StringUtils.isBlank(className)) {
+                    diagnostics.report(Code.UNKNOWN_CLASS, className);
+                } else {
+                    period = c.addStudent(s, forecast != null ? forecast.orderPeriods(available) : available);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Splits the sorted students into runs that {@link Student#compareTo} considers equal.
+     */
+    private List<List<Student>> getPriorityTiers(List<Student> sorted) {
+        List<List<Student>> tiers = new ArrayList<>();
+        List<Student> tier = new ArrayList<>();
+        for (Student s : sorted) {
+            if (!tier.isEmpty() && tier.get(0).compareTo(s) != 0) {
+                tiers.add(tier);
+                tier = new ArrayList<>();
+            }
+            tier.add(s);
+        }
+        if (!tier.isEmpty()) {
+            tiers.add(tier);
+        }
+        return tiers;
+    }
+    
     private int getMaxChoices(List<Student> students) {
     	return students.stream()
     			.mapToInt(s->s.choices.size())
@@ -221,14 +385,8 @@ public class Scheduling {
     
     private Pair<ByteArrayOutputStream, ByteArrayOutputStream> outputResults(List<Student> students, Map<String, Class> classes) {
         int numPeriods = getNumPeriods(classes);
-        int maxScore = 0;
-        int firstGradeMaxScore = 0;
-        for (int i = 0; i < numPeriods; i++) {
-            maxScore += (10-i);
-            if (i < 3) {
-                firstGradeMaxScore += (10-i);
-            }
-        }
+        int maxScore = Objective.getMaxHappinessScore(numPeriods);
+        int firstGradeMaxScore = Objective.getMaxHappinessScore(Math.min(3, numPeriods));
         
         String classHeader = IntStream.range(1, numPeriods+1)
                 .mapToObj(i->"Session "+i)
@@ -292,33 +450,101 @@ public class Scheduling {
         });
     }
     
-    private boolean firstGraderMissingClasses(Student s) {
-    	return (s.isInFirstGrade() && s.assignments.size() < 3);
-    }
-    
-    private boolean studentMissingClasses(Student s, int numPeriods) {
-    	return firstGraderMissingClasses(s) || (!s.isInFirstGrade() && s.assignments.size() < numPeriods);
-    }
-    
     private Stream<Student> streamStudentsWithoutAllClasses(List<Student> s, Map<String, Class> classes) {
     	int numPeriods = getNumPeriods(classes);
-        return s.stream().filter(student->studentMissingClasses(student, numPeriods));
+        return s.stream().filter(student->student.isMissingClasses(numPeriods));
     }
     
     public Schedule run() {
-    	err.println("Running Normal Schedule");
-    	err.println("-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-");
+    	diagnostics.report(Code.SCHEDULE_STARTED, "Normal");
     	return run(classes, students, false);
     }
     
     public Schedule run(Map<String, Class> classes, List<Student> students, boolean isRaining) {
+        if (isRaining) {
+        	diagnostics.report(Code.SCHEDULE_STARTED, "Rain");
+        }
+        
+        Solution solution = schedule(classes, students, isRaining, diagnostics);
+        reportForecast(solution);
+        if (!solution.infeasibleStudents.isEmpty()) {
+            // a tight roster can have hundreds of these, so only name a few
+            diagnostics.report(Code.INFEASIBLE_STUDENTS, solution.infeasibleStudents.size(), solution.infeasibleStudents.stream()
+                    .limit(INFEASIBLE_SAMPLE)
+                    .map(Student::getName)
+                    .collect(joining(", ")));
+        }
+        diagnostics.report(Code.LOWER_BOUND, solution.lowerBound);
+        Pair<List<Student>, Map<String,Class>> bestRun = Pair.of(solution.students, solution.classes);
+        Objective.Evaluation best = solution.evaluation;
+        
+        long studentsWithoutFullSchedule = streamStudentsWithoutAllClasses(bestRun.getLeft(), bestRun.getRight())
+        		//.peek(student->System.err.println(student.getName() + " doesn't have a full schedule."))
+        		.count();
+        
+        diagnostics.report(Code.BEST_RUN, best);
+        byte[] capacityPlanReport = null;
+        if (!isRaining && capacityLimits != null) {
+            CapacityPlanner planner = new CapacityPlanner(capacityLimits, getNumPeriods(bestRun.getRight()), (s, c)->everyoneGetsFirstChoice(s, c, solution.forecast));
+            CapacityPlanner.Plan plan = planner.plan(copyStudents(bestRun.getLeft()), copyClasses(bestRun.getRight()));
+            diagnostics.report(Code.CAPACITY_PLAN, plan.getTotalCost(), plan.getMissingBefore(), plan.getMissingAfter());
+            capacityPlanReport = plan.toCsv(capacityLimits);
+        }
+        if (randomlyFillMissingClasses) {
+        	fillInHolesInClassAssignments(bestRun.getLeft(), bestRun.getRight());
+        }
+        diagnostics.report(Code.MISSING_CLASSES, studentsWithoutFullSchedule, randomlyFillMissingClasses ? ", have assigned random classes." : ".");
+        Pair<ByteArrayOutputStream, ByteArrayOutputStream> output = outputResults(bestRun.getLeft(), bestRun.getRight());
+        
+        Map<String, Map<Integer, String>> existing = isRaining ? existingRainAssignments : existingAssignments;
+        byte[] assignmentChanges = null;
+        if (!existing.isEmpty()) {
+            AssignmentChanges changes = new AssignmentChanges(existing, bestRun.getLeft(), getNumPeriods(bestRun.getRight()));
+            diagnostics.report(Code.ASSIGNMENT_CHANGES, changes.getSummary());
+            assignmentChanges = changes.toCsv(bestRun.getRight());
+        }
+        
+        byte[] rainAssignments = null;
+        byte[] rainClassSizes = null;
+        byte[] rainDemandReport = null;
+        byte[] scenarioReport = null;
+        byte[] rainAssignmentChanges = null;
+        Map<String, byte[]> rainRosters = null;
+        if (!isRaining) {
+        	Schedule rainSchedule = run(rainClasses, rainStudents != null ? rainStudents : bestRun.getLeft(), true);
+        	rainAssignments = rainSchedule.getAssignments();
+        	rainClassSizes = rainSchedule.getClassSizes();
+        	rainDemandReport = rainSchedule.getDemandReport();
+        	rainAssignmentChanges = rainSchedule.getAssignmentChanges();
+        	rainRosters = rainSchedule.getRosters();
+        	
+        	if (!scenarios.isEmpty()) {
+        		scenarioReport = Scenario.toCsv(runScenarios(scenarios));
+        	}
+        }
+        
+        Schedule schedule = new Schedule(output.getLeft().toByteArray(), output.getRight().toByteArray() ,rainAssignments, rainClassSizes, studentsWithoutFullSchedule, diagnostics.render());
+        schedule.setDemandReport(solution.forecast.toCsv());
+        schedule.setRainDemandReport(rainDemandReport);
+        schedule.setScenarioReport(scenarioReport);
+        schedule.setCapacityPlanReport(capacityPlanReport);
+        schedule.setAssignmentChanges(assignmentChanges);
+        schedule.setRainAssignmentChanges(rainAssignmentChanges);
+        schedule.setRosters(new Rosters(bestRun.getRight()).toCsvFiles());
+        schedule.setRainRosters(rainRosters);
+        return schedule;
+    }
+    
+    /**
+     * Solves the given classes and students without touching them or writing any output, so that several of these can
+     * run at the same time from the same parsed data. Warnings from the solve only go to the given diagnostics.
+     */
+    private Solution schedule(Map<String, Class> classes, List<Student> students, boolean isRaining, Diagnostics diagnostics) {
         students = copyStudents(students);
         classes = copyClasses(classes);
+        List<Student> settled = Collections.emptyList();
         
         if (isRaining) {
-        	err.println("\nRunning Rain Schedule");
-        	err.println("-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-");
-        	
         	Set<String> nonRainClasses = classes.entrySet().stream()
         			.filter(e->!e.getValue().isCancelledWhenRaining)
         			.map(e->e.getKey())
@@ -327,29 +553,118 @@ public class Scheduling {
         	for (Student student : students) {
         		student.lockNonRainAssignments(nonRainClasses);
         		student.resetAssignment();
-        		forceAddStudentsToClasses(student, classes);
+        		forceAddStudentsToClasses(student, classes, diagnostics);
+        	}
+        	
+        	// everyone who still has a full schedule keeps it, only the students whose classes were cancelled are placed again
+        	int numPeriods = getNumPeriods(classes);
+        	Map<Boolean, List<Student>> displaced = students.stream().collect(partitioningBy(student->student.isMissingClasses(numPeriods)));
+        	settled = displaced.get(false);
+        	students = displaced.get(true);
+        } else {
+        	for (Student student : students) {
+        		if (!student.assignments.isEmpty()) {
+        			forceAddStudentsToClasses(student, classes, diagnostics);
+        		}
         	}
         }
 
+        DemandForecast forecast = new DemandForecast(classes, students, getNumPeriods(classes));
+        Set<String> pruned = new TreeSet<>();
+        students.forEach(student->pruned.addAll(forecast.pruneHopelessChoices(student)));
+        
+        Solution solution = sharded ? solveSharded(classes, students, forecast, diagnostics) : solve(classes, students, forecast, diagnostics);
+        if (!settled.isEmpty()) {
+            solution.students = new ArrayList<>(solution.students);
+            solution.students.addAll(settled);
+            solution.evaluation = objective.evaluate(solution.students, solution.classes);
+        }
+        solution.forecast = forecast;
+        solution.prunedChoices = pruned;
+        return solution;
+    }
+    
+    /**
+     * Runs every scenario against the classes and students parsed for this schedule, in parallel, and returns how each
+     * one compares. The first result is always the schedule without any changes.
+     */
+    public List<Scenario.Result> runScenarios(List<Scenario> scenarios) {
+        List<Scenario> all = new ArrayList<>();
+        all.add(new Scenario(Scenario.BASELINE));
+        all.addAll(scenarios);
+        
+        return all.parallelStream().map(scenario->{
+            Map<String, Class> scenarioClasses = copyClasses(classes);
+            List<String> notes = scenario.apply(scenarioClasses);
+            Map<String, Class> scenarioRainClasses;
+            if (rainClassesDerived) {
+                scenarioRainClasses = copyClasses(scenarioClasses);
+                scenarioRainClasses.values().forEach(Class::clearForRainSchedule);
+            } else {
+                scenarioRainClasses = copyClasses(rainClasses);
+                scenario.apply(scenarioRainClasses);
+            }
+            
+            // a scenario can add a class that students chose but that wasn't in classes.csv, so match the choices up again.
+            // its warnings are about classes that only exist in the scenario, so they're kept out of the real schedule's messages.
+            Diagnostics scenarioDiagnostics = new Diagnostics(Diagnostics.Level.WARN, MAX_DIAGNOSTICS);
+            Solution normal = schedule(scenarioClasses, resolveChoices(students, scenarioClasses), false, scenarioDiagnostics);
+            Solution rain = schedule(scenarioRainClasses, rainStudents != null ? resolveChoices(rainStudents, scenarioRainClasses) : normal.students, true, scenarioDiagnostics);
+            return new Scenario.Result(scenario.getName(), normal.evaluation, rain.evaluation, notes);
+        }).collect(toList());
+    }
+    
+    private List<Student> resolveChoices(List<Student> students, Map<String, Class> classes) {
+        ClassNameResolver resolver = new ClassNameResolver(classes);
+        List<Student> resolved = copyStudents(students);
+        resolved.forEach(s->s.resolveChoices(resolver));
+        return resolved;
+    }
+    
+    private static class Solution {
+        List<Student> students;
+        Map<String, Class> classes;
+        Objective.Evaluation evaluation;
+        List<Student> infeasibleStudents = new ArrayList<>();
+        int lowerBound;
+        DemandForecast forecast;
+        Set<String> prunedChoices;
+    }
+    
+    private Solution solve(Map<String, Class> classes, List<Student> students, DemandForecast forecast, Diagnostics diagnostics) {
+        FeasibilityAnalyzer feasibility = new FeasibilityAnalyzer(classes, students, getNumPeriods(classes));
+
         Map<String, Class> c = copyClasses(classes);
         List<Student> s = copyStudents(students);
         
-        Pair<List<Student>, Map<String,Class>> bestRun = Pair.of(null, null);
-        int bestMissing = Integer.MAX_VALUE;
-        int numStudentsMissingClasses = -1;
-        int tries = 100;
+        Solution solution = new Solution();
+        solution.infeasibleStudents.addAll(feasibility.getInfeasibleStudents());
+        solution.lowerBound = feasibility.getLowerBound();
+        
+        if (strategy == Strategy.DEFERRED_ACCEPTANCE) {
+            new DeferredAcceptance(c, forecast, getNumPeriods(c), className->diagnostics.report(Code.UNKNOWN_CLASS, className)).assign(s);
+            solution.evaluation = objective.evaluate(s, c);
+            solution.students = s;
+            solution.classes = c;
+            return solution;
+        }
         
+        int tries = 100;
         
         while (tries-- > 0) {
-            everyoneGetsFirstChoice(s, c);
+            everyoneGetsFirstChoice(s, c, forecast, diagnostics);
             
             List<Student> studentsWithoutAllClasses = streamStudentsWithoutAllClasses(s, c).collect(toList());
 
-            numStudentsMissingClasses = studentsWithoutAllClasses.size();
+            Objective.Evaluation evaluation = objective.evaluate(s, c);
+            if (evaluation.isBetterThan(solution.evaluation)) {
+                solution.evaluation = evaluation;
+                solution.students = copyStudents(s);
+                solution.classes = copyClasses(c);
+            }
             
-            if (numStudentsMissingClasses < bestMissing) {
-                bestMissing = numStudentsMissingClasses;
-                bestRun = Pair.of(copyStudents(s), copyClasses(c));
+            if (solution.evaluation.getNumMissing() <= feasibility.getLowerBound()) {
+                break;
             }
             
             // do something to make it so that more students get their classes filled.
@@ -359,52 +674,71 @@ public class Scheduling {
             c.values().stream().forEach(Class::resetAssignment);
             s.stream().forEach(Student::resetAssignment);
         }
+        return solution;
+    }
+    
+    private Solution solveSharded(Map<String, Class> classes, List<Student> students, DemandForecast forecast, Diagnostics diagnostics) {
+        ShardPlanner planner = new ShardPlanner(classes, students);
+        if (planner.getShards().size() > 1) {
+            diagnostics.report(Code.SHARDS, planner.getShards().size());
+        }
         
-
+        List<Solution> solutions = planner.getShards().parallelStream()
+                .map(shard->solve(shard.getClasses(), shard.getStudents(), forecast, diagnostics))
+                .collect(toList());
         
-        long studentsWithoutFullSchedule = streamStudentsWithoutAllClasses(bestRun.getLeft(), bestRun.getRight())
-        		//.peek(student->System.err.println(student.getName() + " doesn't have a full schedule."))
-        		.count();
-        
-        if (randomlyFillMissingClasses) {
-        	fillInHolesInClassAssignments(bestRun.getLeft(), bestRun.getRight());
+        Solution merged = new Solution();
+        merged.students = new ArrayList<>(copyStudents(planner.getUnlinkedStudents()));
+        merged.classes = copyClasses(classes);
+        for (Solution solution : solutions) {
+            merged.students.addAll(solution.students);
+            merged.classes.putAll(solution.classes);
+            merged.infeasibleStudents.addAll(solution.infeasibleStudents);
+            merged.lowerBound += solution.lowerBound;
         }
-        err.println(studentsWithoutFullSchedule + " students don't have full schedules" + (randomlyFillMissingClasses ? ", have assigned random classes." : "."));
-        Pair<ByteArrayOutputStream, ByteArrayOutputStream> output = outputResults(bestRun.getLeft(), bestRun.getRight());
         
-        byte[] rainAssignments = null;
-        byte[] rainClassSizes = null;
-        if (!isRaining) {
-        	Schedule rainSchedule = run(rainClasses, rainStudents != null ? rainStudents : bestRun.getLeft(), true);
-        	rainAssignments = rainSchedule.getAssignments();
-        	rainClassSizes = rainSchedule.getClassSizes();
+        // students with nothing to choose from can never be placed
+        List<Student> unplaceable = streamStudentsWithoutAllClasses(planner.getUnlinkedStudents(), classes).collect(toList());
+        merged.infeasibleStudents.addAll(unplaceable);
+        merged.lowerBound += unplaceable.size();
+        merged.evaluation = objective.evaluate(merged.students, merged.classes);
+        return merged;
+    }
+    
+    private void reportForecast(Solution solution) {
+        for (String className : solution.prunedChoices) {
+            if (!solution.classes.containsKey(className) && !unknownChoices.contains(className)) {
+                diagnostics.report(Code.UNKNOWN_CLASS, className);
+            }
         }
         
-        err.close();
-        return new Schedule(output.getLeft().toByteArray(), output.getRight().toByteArray() ,rainAssignments, rainClassSizes, studentsWithoutFullSchedule, new String(errStream.toByteArray(), Charset.forName("utf8")));
+        String scarce = solution.classes.keySet().stream().filter(solution.forecast::isScarce).sorted().collect(joining(", "));
+        if (StringUtils.isNotBlank(scarce)) {
+            diagnostics.report(Code.OVERSUBSCRIBED_CLASSES, scarce);
+        }
     }
     
     private void fillInHolesInClassAssignments(List<Student> students, Map<String, Class> classes) {
         Random r = new Random();
         streamStudentsWithoutAllClasses(students, classes).forEach(student->{
-        	int start = student.isInFirstGrade() ? 3 : 0;
-            for (int i = start; i < 6; i++) {
+            student.getSessions(getNumPeriods(classes)).forEach(i->{
                 if (!student.assignments.containsKey(i)) {
                     List<String> potentialClasses = new ArrayList<>(getClassesForPeriod(classes, i));
+                    potentialClasses.removeIf(name->!classes.get(name).acceptsGrade(student));
                     student.assignments.values().stream().map(a->a.name).forEach(potentialClasses::remove);
                     if (!potentialClasses.isEmpty()) {
 	                    Class randomClass = classes.get(potentialClasses.get(r.nextInt(potentialClasses.size())));
 	                    if (randomClass.getPeriod(i).addStudent(student)) {
-	                    	err.println("Randomly adding " + student.getName() + " to class " + randomClass.name);
+	                    	diagnostics.report(Code.RANDOMLY_ADDED, student, randomClass.name);
 	                        student.assignments.put(i, new Assignment(randomClass.name, false));
 	                    } else {
-	                        err.println("Tried to add " + student.getName() + " to " + randomClass.name + " but it's full?");
+	                        diagnostics.report(Code.RANDOM_CLASS_FULL, student, randomClass.name);
 	                    }
                     } else {
-                    	err.println("Out of classes for period " + (i+1) + " for " + student.getName());
+                    	diagnostics.report(Code.OUT_OF_CLASSES, i+1, student);
                     }
                 }
-            }
+            });
         });
     }
     
@@ -0,0 +1,103 @@
+package us.pojo.scheduling;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Splits an event into groups of students and classes that never compete with each other. Students only take seats
+ * in the classes they chose (or are already locked into), so two students are linked whenever they share a class.
+ * Each connected group can be solved on its own, and in parallel, without any conflicts to reconcile afterwards.
+ */
+public class ShardPlanner {
+    public static class Shard {
+        private final Map<String, Class> classes = new TreeMap<>();
+        private final List<Student> students = new ArrayList<>();
+
+        public Map<String, Class> getClasses() {
+            return classes;
+        }
+
+        public List<Student> getStudents() {
+            return students;
+        }
+    }
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final List<Student> unlinkedStudents = new ArrayList<>();
+    private final Map<String, String> parent = new HashMap<>();
+
+    public ShardPlanner(Map<String, Class> classes, List<Student> students) {
+        classes.keySet().forEach(name -> parent.put(name, name));
+
+        for (Student s : students) {
+            String first = null;
+            for (String name : getLinkedClasses(s, classes)) {
+                if (first == null) {
+                    first = name;
+                } else {
+                    union(first, name);
+                }
+            }
+        }
+
+        Map<String, Shard> byRoot = new LinkedHashMap<>();
+        for (Student s : students) {
+            List<String> linked = getLinkedClasses(s, classes);
+            if (linked.isEmpty()) {
+                unlinkedStudents.add(s);
+            } else {
+                byRoot.computeIfAbsent(find(linked.get(0)), k -> new Shard()).students.add(s);
+            }
+        }
+        classes.forEach((name, c) -> {
+            Shard shard = byRoot.get(find(name));
+            if (shard != null) {
+                shard.classes.put(name, c);
+            }
+        });
+        shards.addAll(byRoot.values());
+    }
+
+    private static List<String> getLinkedClasses(Student s, Map<String, Class> classes) {
+        List<String> linked = new ArrayList<>();
+        s.choices.stream().filter(classes::containsKey).forEach(linked::add);
+        s.assignments.values().stream().map(a -> a.name).filter(classes::containsKey).forEach(linked::add);
+        return linked;
+    }
+
+    private String find(String name) {
+        String root = name;
+        while (!parent.get(root).equals(root)) {
+            root = parent.get(root);
+        }
+        while (!parent.get(name).equals(root)) {
+            String next = parent.get(name);
+            parent.put(name, root);
+            name = next;
+        }
+        return root;
+    }
+
+    private void union(String a, String b) {
+        String rootA = find(a);
+        String rootB = find(b);
+        if (!rootA.equals(rootB)) {
+            parent.put(rootA, rootB);
+        }
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * Students without a single known class to choose from, they can't be placed by any shard.
+     */
+    public List<Student> getUnlinkedStudents() {
+        return unlinkedStudents;
+    }
+}
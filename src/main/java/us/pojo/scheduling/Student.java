@@ -16,8 +16,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -26,12 +24,12 @@ import org.apache.commons.validator.routines.IntegerValidator;
 
 public class Student implements Comparable<Student> {
     private static DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/YY hh:mm a");
-    private static final Pattern CLEANUP_CLASS = Pattern.compile("^\\s*([^(]+?)\\s*\\(.+\\)\\s*$");
 
     public Student(Student copy) {
         this.grade = copy.grade;
         this.choices = new ArrayList<>(copy.choices);
-        this.assignments = new TreeMap<>(copy.assignments);
+        // the locks are changed on the copy for the rain schedule, so the assignments can't be shared
+        copy.assignments.forEach((period, a)->this.assignments.put(period, new Assignment(a.name, a.locked)));
         this.fields = copy.fields;
         this.time = copy.time;
         this.originalChoices = copy.originalChoices;
@@ -49,12 +47,6 @@ public class Student implements Comparable<Student> {
             fields.put(header.get(i).toLowerCase(), values.get(i));
             if (header.get(i).endsWith("choice")) {
                 String c = values.get(i);
-                if (c != null) {
-                    Matcher m = CLEANUP_CLASS.matcher(c);
-                    if (m.find()) {
-                        c = m.group(1);
-                    }
-                }
                 if (StringUtils.isNotBlank(c)) {
                     choices.add(c);
                 }
@@ -96,6 +88,21 @@ public class Student implements Comparable<Student> {
         }
     }
     
+    /**
+     * Swaps the choices as written for the names of the classes they match. Choices that don't match a class are kept
+     * as they were written, the solver prunes them against the classes it's given, so a class that only exists in a
+     * scenario can still be chosen.
+     */
+    public void resolveChoices(ClassNameResolver resolver) {
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String c : choices) {
+            resolved.add(resolver.resolve(c).orElse(c.trim()));
+        }
+        this.choices = new ArrayList<>(resolved);
+        this.originalChoices = new ArrayList<>(resolved);
+        nextChoice = 0;
+    }
+    
     public void resetAssignment() {
         List<Integer> toRemove = assignments.entrySet().stream().filter(e->!e.getValue().locked).map(e->e.getKey()).collect(toList());
         toRemove.forEach(assignments::remove);
@@ -126,26 +133,46 @@ public class Student implements Comparable<Student> {
         return buf.toString();
     }
     
-    private String getTeacher() {
+    public String getTeacher() {
         return fields.get("teacher");
     }
 
-    private String getFirstName() {
+    public String getFirstName() {
         return fields.get("student first name");
     }
 
-    private String getLastName() {
+    public String getLastName() {
         return fields.get("student last name");
     }
 
+    /**
+     * Locks the classes that still go ahead in the rain, and unlocks the rest so that they're cleared out with the other
+     * unlocked assignments, even ones that were locked in from an existing schedule.
+     */
     public void lockNonRainAssignments(Set<String> nonRainClasses) {
     	for (Assignment a : assignments.values()) {
-    		if (nonRainClasses.contains(a.name)) {
-    			a.locked = true;
-    		}
+    		a.locked = nonRainClasses.contains(a.name);
     	}
     }
     
+    public boolean isMissingClasses(int numPeriods) {
+        return assignments.size() < getSessions(numPeriods).count();
+    }
+    
+    /**
+     * The sessions the student can be placed in, counting from 0.
+     */
+    public IntStream getSessions(int numPeriods) {
+        return getSessions(isInFirstGrade(), numPeriods);
+    }
+    
+    /**
+     * First graders only stay for the 4th to 6th sessions, everyone else can take any of them.
+     */
+    public static IntStream getSessions(boolean isInFirstGrade, int numPeriods) {
+        return isInFirstGrade ? IntStream.range(Math.min(3, numPeriods), Math.min(6, numPeriods)) : IntStream.range(0, numPeriods);
+    }
+    
     public int getHappinessScore(int maxScore) {
         Set<String> classes = assignments.values().stream().map(a->a.name).collect(toSet());
         int score = 0;
@@ -166,9 +193,9 @@ public class Student implements Comparable<Student> {
         return compare;
     }
 
-	public boolean hasMoreChoices(int startingPeriod, int availablePeriods) {
+	public boolean hasMoreChoices(int numPeriods) {
 		// first check to see if this student needs to be placed in any more classes
-		boolean hasAllAssignments = IntStream.range(startingPeriod, availablePeriods + startingPeriod).allMatch(assignments::containsKey);
+		boolean hasAllAssignments = getSessions(numPeriods).allMatch(assignments::containsKey);
 		while (!hasAllAssignments && nextChoice < choices.size()) {
 			String choice = choices.get(nextChoice);
 
@@ -1,5 +1,12 @@
 package us.pojo.scheduling.aws;
 
+import java.util.List;
+
+import us.pojo.scheduling.CapacityPlanner;
+import us.pojo.scheduling.Diagnostics;
+import us.pojo.scheduling.Scenario;
+import us.pojo.scheduling.Scheduling;
+
 public class Request {
 
 	private String classSchedule;
@@ -7,6 +14,15 @@ public class Request {
 	private String students;
 	private String existingAssignments;
 	private String existingRainAssignments;
+	private Double missingWeight;
+	private Double happinessWeight;
+	private Double balanceWeight;
+	private List<Scenario> scenarios;
+	private CapacityPlanner.Limits capacityLimits;
+	private boolean changesOnly;
+	private boolean parallelPlacement;
+	private Scheduling.Strategy strategy;
+	private Diagnostics.Level diagnosticLevel;
 
 	public String getClassSchedule() {
 		return classSchedule;
@@ -47,4 +63,76 @@ public class Request {
 	public void setExistingRainAssignments(String existingRainAssignments) {
 		this.existingRainAssignments = existingRainAssignments;
 	}
+
+	public Double getMissingWeight() {
+		return missingWeight;
+	}
+
+	public void setMissingWeight(Double missingWeight) {
+		this.missingWeight = missingWeight;
+	}
+
+	public Double getHappinessWeight() {
+		return happinessWeight;
+	}
+
+	public void setHappinessWeight(Double happinessWeight) {
+		this.happinessWeight = happinessWeight;
+	}
+
+	public Double getBalanceWeight() {
+		return balanceWeight;
+	}
+
+	public void setBalanceWeight(Double balanceWeight) {
+		this.balanceWeight = balanceWeight;
+	}
+
+	public List<Scenario> getScenarios() {
+		return scenarios;
+	}
+
+	public void setScenarios(List<Scenario> scenarios) {
+		this.scenarios = scenarios;
+	}
+
+	public CapacityPlanner.Limits getCapacityLimits() {
+		return capacityLimits;
+	}
+
+	public void setCapacityLimits(CapacityPlanner.Limits capacityLimits) {
+		this.capacityLimits = capacityLimits;
+	}
+
+	public boolean isChangesOnly() {
+		return changesOnly;
+	}
+
+	public void setChangesOnly(boolean changesOnly) {
+		this.changesOnly = changesOnly;
+	}
+
+	public boolean isParallelPlacement() {
+		return parallelPlacement;
+	}
+
+	public void setParallelPlacement(boolean parallelPlacement) {
+		this.parallelPlacement = parallelPlacement;
+	}
+
+	public Scheduling.Strategy getStrategy() {
+		return strategy;
+	}
+
+	public void setStrategy(Scheduling.Strategy strategy) {
+		this.strategy = strategy;
+	}
+
+	public Diagnostics.Level getDiagnosticLevel() {
+		return diagnosticLevel;
+	}
+
+	public void setDiagnosticLevel(Diagnostics.Level diagnosticLevel) {
+		this.diagnosticLevel = diagnosticLevel;
+	}
 }
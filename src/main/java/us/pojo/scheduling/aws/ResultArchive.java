@@ -0,0 +1,182 @@
+package us.pojo.scheduling.aws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import us.pojo.scheduling.Schedule;
+
+/**
+ * Writes the result zip. Every file is deflated on its own thread, and the archive is written to the output stream in
+ * order as soon as each entry is ready, so the output (an S3 upload, for instance) can start on the first files while
+ * later ones are still compressing. ZipOutputStream can only compress one entry at a time, so the zip headers are
+ * written here directly.
+ */
+public class ResultArchive {
+	private static class CompressedEntry {
+		String name;
+		byte[] deflated;
+		long crc;
+		int size;
+		long offset;
+	}
+
+	private static byte[] decode(String base64) {
+		return base64 != null ? Base64.getDecoder().decode(base64) : null;
+	}
+
+	public static Map<String, byte[]> getEntries(Schedule s, Request request) {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		// when only the changes were asked for, they replace the full assignments whenever there was something to compare against
+		entries.put("assignments.csv", request.isChangesOnly() && s.getAssignmentChanges() != null ? null : s.getAssignments());
+		entries.put("assignment-changes.csv", s.getAssignmentChanges());
+		entries.put("class-sizes.csv", s.getClassSizes());
+		entries.put("rain-assignments.csv", request.isChangesOnly() && s.getRainAssignmentChanges() != null ? null : s.getRainAssignments());
+		entries.put("rain-assignment-changes.csv", s.getRainAssignmentChanges());
+		entries.put("rain-class-sizes.csv", s.getRainClassSizes());
+		entries.put("demand.csv", s.getDemandReport());
+		entries.put("rain-demand.csv", s.getRainDemandReport());
+		entries.put("scenarios.csv", s.getScenarioReport());
+		entries.put("capacity-plan.csv", s.getCapacityPlanReport());
+		entries.put("classes.csv", decode(request.getClassSchedule()));
+		entries.put("rain-classes.csv", decode(request.getRainClassSchedule()));
+		entries.put("students.csv", decode(request.getStudents()));
+		if (s.getRosters() != null) {
+			s.getRosters().forEach((name, roster) -> entries.put("rosters/" + name, roster));
+		}
+		if (s.getRainRosters() != null) {
+			s.getRainRosters().forEach((name, roster) -> entries.put("rain-rosters/" + name, roster));
+		}
+		entries.values().removeIf(v -> v == null);
+		return entries;
+	}
+
+	public static byte[] zip(Schedule s, Request request) throws IOException {
+		ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+		write(getEntries(s, request), zipBytes);
+		return zipBytes.toByteArray();
+	}
+
+	public static void write(Map<String, byte[]> entries, OutputStream out) throws IOException {
+		List<CompletableFuture<CompressedEntry>> pending = new ArrayList<>();
+		entries.forEach((name, data) -> pending.add(CompletableFuture.supplyAsync(() -> compress(name, data))));
+
+		int[] dosTime = getDosTime(LocalDateTime.now());
+		List<CompressedEntry> written = new ArrayList<>();
+		long offset = 0;
+		for (CompletableFuture<CompressedEntry> future : pending) {
+			CompressedEntry e;
+			try {
+				e = future.join();
+			} catch (CompletionException ex) {
+				throw ex.getCause() instanceof UncheckedIOException ? ((UncheckedIOException) ex.getCause()).getCause() : new IOException(ex.getCause());
+			}
+			byte[] name = e.name.getBytes(StandardCharsets.UTF_8);
+			e.offset = offset;
+
+			ByteArrayOutputStream header = new ByteArrayOutputStream(30 + name.length);
+			writeInt(header, 0x04034b50);
+			writeShort(header, 20);
+			writeShort(header, 0x0800);
+			writeShort(header, 8);
+			writeShort(header, dosTime[0]);
+			writeShort(header, dosTime[1]);
+			writeInt(header, e.crc);
+			writeInt(header, e.deflated.length);
+			writeInt(header, e.size);
+			writeShort(header, name.length);
+			writeShort(header, 0);
+			header.write(name);
+
+			header.writeTo(out);
+			out.write(e.deflated);
+			offset += header.size() + e.deflated.length;
+			written.add(e);
+		}
+
+		ByteArrayOutputStream directory = new ByteArrayOutputStream();
+		for (CompressedEntry e : written) {
+			byte[] name = e.name.getBytes(StandardCharsets.UTF_8);
+			writeInt(directory, 0x02014b50);
+			writeShort(directory, 20);
+			writeShort(directory, 20);
+			writeShort(directory, 0x0800);
+			writeShort(directory, 8);
+			writeShort(directory, dosTime[0]);
+			writeShort(directory, dosTime[1]);
+			writeInt(directory, e.crc);
+			writeInt(directory, e.deflated.length);
+			writeInt(directory, e.size);
+			writeShort(directory, name.length);
+			writeShort(directory, 0);
+			writeShort(directory, 0);
+			writeShort(directory, 0);
+			writeShort(directory, 0);
+			writeInt(directory, 0);
+			writeInt(directory, e.offset);
+			directory.write(name);
+		}
+		int directorySize = directory.size();
+		writeInt(directory, 0x06054b50);
+		writeShort(directory, 0);
+		writeShort(directory, 0);
+		writeShort(directory, written.size());
+		writeShort(directory, written.size());
+		writeInt(directory, directorySize);
+		writeInt(directory, offset);
+		writeShort(directory, 0);
+		directory.writeTo(out);
+		out.flush();
+	}
+
+	private static CompressedEntry compress(String name, byte[] data) {
+		CompressedEntry e = new CompressedEntry();
+		e.name = name;
+		e.size = data.length;
+
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		e.crc = crc.getValue();
+
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+		try (DeflaterOutputStream out = new DeflaterOutputStream(deflated, deflater)) {
+			out.write(data);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			deflater.end();
+		}
+		e.deflated = deflated.toByteArray();
+		return e;
+	}
+
+	private static int[] getDosTime(LocalDateTime t) {
+		int time = (t.getHour() << 11) | (t.getMinute() << 5) | (t.getSecond() >> 1);
+		int date = ((t.getYear() - 1980) << 9) | (t.getMonthValue() << 5) | t.getDayOfMonth();
+		return new int[] { time, date };
+	}
+
+	private static void writeShort(ByteArrayOutputStream out, int v) {
+		out.write(v & 0xff);
+		out.write((v >>> 8) & 0xff);
+	}
+
+	private static void writeInt(ByteArrayOutputStream out, long v) {
+		writeShort(out, (int) (v & 0xffff));
+		writeShort(out, (int) ((v >>> 16) & 0xffff));
+	}
+}
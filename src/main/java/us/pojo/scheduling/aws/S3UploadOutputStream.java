@@ -0,0 +1,129 @@
+package us.pojo.scheduling.aws;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * Uploads whatever is written to it to S3 while it is still being written. Each time a part's worth of data has been
+ * buffered it is sent as a multipart upload part on the executor. Anything small enough to fit in a single part is sent
+ * with a plain putObject when the stream is closed.
+ */
+public class S3UploadOutputStream extends OutputStream {
+	// S3 doesn't accept parts smaller than 5MB, except for the last one.
+	private static final int PART_SIZE = 5 * 1024 * 1024;
+
+	private final AmazonS3 s3;
+	private final String bucket;
+	private final String key;
+	private final ObjectMetadata meta;
+	private final ExecutorService executor;
+	private final List<Future<PartETag>> parts = new ArrayList<>();
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream(PART_SIZE);
+	private String uploadId;
+	private boolean closed = false;
+	private boolean aborted = false;
+
+	public S3UploadOutputStream(AmazonS3 s3, String bucket, String key, ObjectMetadata meta, ExecutorService executor) {
+		this.s3 = s3;
+		this.bucket = bucket;
+		this.key = key;
+		this.meta = meta;
+		this.executor = executor;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		buffer.write(b);
+		if (buffer.size() >= PART_SIZE) {
+			uploadPart();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int n = Math.min(len, PART_SIZE - buffer.size());
+			buffer.write(b, off, n);
+			off += n;
+			len -= n;
+			if (buffer.size() >= PART_SIZE) {
+				uploadPart();
+			}
+		}
+	}
+
+	private void uploadPart() {
+		if (uploadId == null) {
+			uploadId = s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key, meta)).getUploadId();
+		}
+		byte[] data = buffer.toByteArray();
+		int partNumber = parts.size() + 1;
+		buffer = new ByteArrayOutputStream(PART_SIZE);
+		parts.add(executor.submit(() -> s3.uploadPart(new UploadPartRequest()
+				.withBucketName(bucket)
+				.withKey(key)
+				.withUploadId(uploadId)
+				.withPartNumber(partNumber)
+				.withInputStream(new ByteArrayInputStream(data))
+				.withPartSize(data.length)).getPartETag()));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		if (uploadId == null) {
+			byte[] data = buffer.toByteArray();
+			meta.setContentLength(data.length);
+			s3.putObject(bucket, key, new ByteArrayInputStream(data), meta);
+			return;
+		}
+
+		try {
+			if (buffer.size() > 0) {
+				uploadPart();
+			}
+			List<PartETag> etags = new ArrayList<>();
+			for (Future<PartETag> part : parts) {
+				etags.add(part.get());
+			}
+			s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, etags));
+		} catch (InterruptedException | ExecutionException | RuntimeException e) {
+			abort();
+			throw new IOException("Unable to upload " + key, e);
+		}
+	}
+
+	/**
+	 * Gives up on the upload, so S3 doesn't keep the parts that were already sent.
+	 */
+	public void abort() {
+		closed = true;
+		if (aborted) {
+			return;
+		}
+		aborted = true;
+		parts.forEach(p -> p.cancel(true));
+		if (uploadId != null) {
+			s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+		}
+	}
+}
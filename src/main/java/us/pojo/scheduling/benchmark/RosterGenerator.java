@@ -0,0 +1,121 @@
+package us.pojo.scheduling.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates made up classes.csv and students.csv files that look like a real sign-up: a few classes are far more
+ * popular than the rest, some classes are only open to older grades and some sessions are closed. The same seed always
+ * gives the same roster, so benchmark results can be compared between runs.
+ */
+public class RosterGenerator {
+    private static final int[] SESSION_SEATS = { 0, 12, 15, 20, 20, 25 };
+
+    private final Random random;
+    private final int numClasses;
+    private final int numPeriods;
+    private final int numChoices;
+
+    public RosterGenerator(long seed, int numClasses, int numPeriods, int numChoices) {
+        this.random = new Random(seed);
+        this.numClasses = numClasses;
+        this.numPeriods = numPeriods;
+        this.numChoices = Math.min(numChoices, numClasses);
+    }
+
+    /**
+     * Enough classes that there are about a fifth more seats than the students need, before closed sessions and grade
+     * limits take some of them away.
+     */
+    public static SolverBenchmark.Roster generate(String name, long seed, int numStudents) {
+        int numClasses = Math.max(12, numStudents / 12);
+        RosterGenerator generator = new RosterGenerator(seed, numClasses, 6, 10);
+        return new SolverBenchmark.Roster(name, generator.classes(), null, generator.students(numStudents));
+    }
+
+    public byte[] classes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PrintWriter csv = new PrintWriter(out)) {
+            csv.print("Class Name");
+            for (int p = 1; p <= numPeriods; p++) {
+                csv.print(",Session " + p);
+            }
+            csv.println(",MinGrade,Location,IsCancelledWhenRaining");
+            for (int c = 0; c < numClasses; c++) {
+                csv.print("Class " + c);
+                for (int p = 0; p < numPeriods; p++) {
+                    csv.print("," + SESSION_SEATS[random.nextInt(SESSION_SEATS.length)]);
+                }
+                int minGrade = random.nextInt(10) < 7 ? 1 : 2 + random.nextInt(3);
+                csv.println("," + minGrade + ",Room " + c + "," + (random.nextInt(4) == 0 ? 1 : 0));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public byte[] students(int numStudents) {
+        // popularity falls off with rank, so the first few classes are oversubscribed
+        double[] popularity = new double[numClasses];
+        double total = 0;
+        for (int c = 0; c < numClasses; c++) {
+            total += 1 / Math.pow(c + 1, 0.8);
+            popularity[c] = total;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PrintWriter csv = new PrintWriter(out)) {
+            csv.print("Student First Name,Student Last Name,Grade,Teacher,Date Completed,Time Completed");
+            for (int i = 1; i <= numChoices; i++) {
+                csv.print("," + i + ordinal(i) + " choice");
+            }
+            csv.println();
+            for (int s = 0; s < numStudents; s++) {
+                int grade = 1 + random.nextInt(5);
+                csv.print("First" + s + ",Last" + s + "," + grade + "," + grade + "-Teacher,");
+                csv.print(String.format("04/%02d/19,%02d:%02d %s", 1 + random.nextInt(14), 1 + random.nextInt(12), random.nextInt(60),
+                        random.nextBoolean() ? "AM" : "PM"));
+                for (String choice : pickChoices(popularity, total)) {
+                    csv.print("," + choice);
+                }
+                csv.println();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private List<String> pickChoices(double[] popularity, double total) {
+        List<String> choices = new ArrayList<>();
+        int count = numChoices - random.nextInt(3);
+        while (choices.size() < count) {
+            double r = random.nextDouble() * total;
+            int c = 0;
+            while (popularity[c] < r) {
+                c++;
+            }
+            String choice = "Class " + c;
+            if (!choices.contains(choice)) {
+                choices.add(choice);
+            }
+        }
+        return choices;
+    }
+
+    private static String ordinal(int i) {
+        if (i % 100 >= 11 && i % 100 <= 13) {
+            return "th";
+        }
+        switch (i % 10) {
+        case 1:
+            return "st";
+        case 2:
+            return "nd";
+        case 3:
+            return "rd";
+        default:
+            return "th";
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package us.pojo.scheduling.benchmark;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import us.pojo.scheduling.CSVParser;
+import us.pojo.scheduling.Schedule;
+import us.pojo.scheduling.Scheduling;
+
+/**
+ * Runs every solver configuration over a set of rosters and records how long it took, how much heap it needed and how
+ * good the schedule was, so that a change to the solver can be checked for regressions before event day.
+ * <p>
+ * Rosters are either real ones, exported (with names removed) into a directory per roster holding classes.csv,
+ * students.csv and optionally classes-rain.csv, or generated by {@link RosterGenerator}. The results are written as
+ * a csv that can be kept as the baseline for the next run. Any configuration that got worse than the baseline is
+ * reported and the process exits with status 1.
+ * <p>
+ * Usage: SolverBenchmark [results file] [baseline file] [roster directory...]
+ * <ul>
+ * <li>-Dbenchmark.synthetic=500,2000,5000 sets the sizes of the generated rosters, empty for none</li>
+ * <li>-Dbenchmark.repeats=3 sets how many timed runs to take the median of</li>
+ * </ul>
+ */
+public class SolverBenchmark {
+    private static final String HEADER = "Roster,Configuration,Students,Wall Millis,Peak Heap MB,Missing,Happiness Mean,Happiness P10,Happiness P50,Happiness P90,Pareto";
+    private static final double TIME_TOLERANCE = 0.25;
+    private static final long MIN_TIME_DIFFERENCE_MILLIS = 100;
+    private static final double HEAP_TOLERANCE = 0.25;
+    private static final double HAPPINESS_TOLERANCE = 0.5;
+
+    public static class Roster {
+        private final String name;
+        private final byte[] classes;
+        private final byte[] rainClasses;
+        private final byte[] students;
+
+        public Roster(String name, byte[] classes, byte[] rainClasses, byte[] students) {
+            this.name = name;
+            this.classes = classes;
+            this.rainClasses = rainClasses;
+            this.students = students;
+        }
+
+        public static Roster load(File dir) throws IOException {
+            File rainClasses = new File(dir, "classes-rain.csv");
+            return new Roster(dir.getName(),
+                    Files.readAllBytes(new File(dir, "classes.csv").toPath()),
+                    rainClasses.isFile() ? Files.readAllBytes(rainClasses.toPath()) : null,
+                    Files.readAllBytes(new File(dir, "students.csv").toPath()));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        Scheduling createScheduling() {
+            return new Scheduling(new ByteArrayInputStream(classes),
+                    rainClasses != null ? new ByteArrayInputStream(rainClasses) : null,
+                    new ByteArrayInputStream(students), null, null, false);
+        }
+    }
+
+    public static class Configuration {
+        private final String name;
+        private final Consumer<Scheduling> setup;
+
+        public Configuration(String name, Consumer<Scheduling> setup) {
+            this.name = name;
+            this.setup = setup;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class Result {
+        String roster;
+        String configuration;
+        int students;
+        long wallMillis;
+        long peakHeapBytes;
+        long missing;
+        double happinessMean;
+        int happinessP10;
+        int happinessP50;
+        int happinessP90;
+        boolean pareto;
+
+        String toCsv() {
+            return String.format("\"%s\",\"%s\",%d,%d,%.1f,%d,%.2f,%d,%d,%d,%s", roster, configuration, students, wallMillis,
+                    peakHeapBytes / (1024.0 * 1024.0), missing, happinessMean, happinessP10, happinessP50, happinessP90, pareto);
+        }
+
+        static Result fromCsv(String line) {
+            List<String> fields = CSVParser.parseLine(line);
+            Result r = new Result();
+            r.roster = fields.get(0);
+            r.configuration = fields.get(1);
+            r.students = Integer.parseInt(fields.get(2));
+            r.wallMillis = Long.parseLong(fields.get(3));
+            r.peakHeapBytes = (long) (Double.parseDouble(fields.get(4)) * 1024 * 1024);
+            r.missing = Long.parseLong(fields.get(5));
+            r.happinessMean = Double.parseDouble(fields.get(6));
+            r.happinessP10 = Integer.parseInt(fields.get(7));
+            r.happinessP50 = Integer.parseInt(fields.get(8));
+            r.happinessP90 = Integer.parseInt(fields.get(9));
+            r.pareto = Boolean.parseBoolean(fields.get(10));
+            return r;
+        }
+
+        String getKey() {
+            return roster + "/" + configuration;
+        }
+
+        /**
+         * At least as good on missing students, happiness and time, and better on one of them.
+         */
+        boolean dominates(Result o) {
+            boolean noWorse = missing <= o.missing && happinessMean >= o.happinessMean && wallMillis <= o.wallMillis;
+            boolean better = missing < o.missing || happinessMean > o.happinessMean || wallMillis < o.wallMillis;
+            return noWorse && better;
+        }
+    }
+
+    public static final List<Configuration> CONFIGURATIONS = Arrays.asList(
+            new Configuration("default", s -> {}),
+            new Configuration("unsharded", s -> s.setSharded(false)),
+            new Configuration("parallel placement", s -> s.setParallelPlacement(true)),
+            new Configuration("deferred acceptance", s -> s.setStrategy(Scheduling.Strategy.DEFERRED_ACCEPTANCE)));
+
+    private final List<Configuration> configurations;
+    private final int repeats;
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(p -> p.getType() == MemoryType.HEAP)
+            .collect(toList());
+
+    public SolverBenchmark(List<Configuration> configurations, int repeats) {
+        this.configurations = configurations;
+        this.repeats = Math.max(1, repeats);
+    }
+
+    public List<Result> run(List<Roster> rosters) {
+        List<Result> results = new ArrayList<>();
+        for (Roster roster : rosters) {
+            List<Result> rosterResults = configurations.stream().map(c -> measure(roster, c)).collect(toList());
+            rosterResults.forEach(r -> r.pareto = rosterResults.stream().noneMatch(o -> o.dominates(r)));
+            results.addAll(rosterResults);
+        }
+        return results;
+    }
+
+    /**
+     * Runs once to warm up, then takes the median time and the worst schedule of the timed runs. Peak heap is the sum
+     * of the peaks of the heap pools, so it's an upper bound rather than an exact figure.
+     */
+    private Result measure(Roster roster, Configuration configuration) {
+        System.err.println("Running " + configuration.name + " on " + roster.name);
+        runOnce(roster, configuration);
+
+        long[] times = new long[repeats];
+        long peakHeap = 0;
+        Result worst = null;
+        for (int i = 0; i < repeats; i++) {
+            System.gc();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            long start = System.nanoTime();
+            Schedule schedule = runOnce(roster, configuration);
+            times[i] = (System.nanoTime() - start) / 1_000_000;
+            peakHeap = Math.max(peakHeap, heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum());
+
+            Result r = summarize(roster, configuration, schedule);
+            if (worst == null || r.missing > worst.missing || (r.missing == worst.missing && r.happinessMean < worst.happinessMean)) {
+                worst = r;
+            }
+        }
+        Arrays.sort(times);
+        worst.wallMillis = times[repeats / 2];
+        worst.peakHeapBytes = peakHeap;
+        return worst;
+    }
+
+    private Schedule runOnce(Roster roster, Configuration configuration) {
+        Scheduling scheduling = roster.createScheduling();
+        configuration.setup.accept(scheduling);
+        return scheduling.run();
+    }
+
+    private Result summarize(Roster roster, Configuration configuration, Schedule schedule) {
+        String[] lines = new String(schedule.getAssignments(), StandardCharsets.UTF_8).split("\r?\n");
+        int happinessColumn = CSVParser.parseLine(lines[0]).indexOf("Happiness");
+        int[] happiness = Arrays.stream(lines)
+                .skip(1)
+                .filter(l -> !l.trim().isEmpty())
+                .mapToInt(l -> Integer.parseInt(CSVParser.parseLine(l).get(happinessColumn)))
+                .sorted()
+                .toArray();
+
+        Result r = new Result();
+        r.roster = roster.name;
+        r.configuration = configuration.name;
+        r.students = happiness.length;
+        r.missing = schedule.getStudentsMissingAssignments();
+        r.happinessMean = Arrays.stream(happiness).average().orElse(0);
+        r.happinessP10 = percentile(happiness, 10);
+        r.happinessP50 = percentile(happiness, 50);
+        r.happinessP90 = percentile(happiness, 90);
+        return r;
+    }
+
+    private static int percentile(int[] sorted, int percentile) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+    /**
+     * Lists every result that is worse than the same roster and configuration in the baseline.
+     */
+    public static List<String> findRegressions(List<Result> results, List<Result> baseline) {
+        Map<String, Result> byKey = new LinkedHashMap<>();
+        baseline.forEach(b -> byKey.put(b.getKey(), b));
+
+        List<String> regressions = new ArrayList<>();
+        for (Result r : results) {
+            Result b = byKey.get(r.getKey());
+            if (b == null) {
+                continue;
+            }
+            if (r.missing > b.missing) {
+                regressions.add(r.getKey() + ": " + r.missing + " students missing classes, was " + b.missing);
+            }
+            if (r.happinessMean < b.happinessMean - HAPPINESS_TOLERANCE) {
+                regressions.add(String.format("%s: average happiness %.2f, was %.2f", r.getKey(), r.happinessMean, b.happinessMean));
+            }
+            if (r.wallMillis > b.wallMillis * (1 + TIME_TOLERANCE) && r.wallMillis - b.wallMillis > MIN_TIME_DIFFERENCE_MILLIS) {
+                regressions.add(r.getKey() + ": took " + r.wallMillis + "ms, was " + b.wallMillis + "ms");
+            }
+            if (r.peakHeapBytes > b.peakHeapBytes * (1 + HEAP_TOLERANCE)) {
+                regressions.add(String.format("%s: peak heap %.1fMB, was %.1fMB", r.getKey(),
+                        r.peakHeapBytes / (1024.0 * 1024.0), b.peakHeapBytes / (1024.0 * 1024.0)));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Quality against time for each roster, fastest first. Configurations on the Pareto front are marked with a *.
+     */
+    public static String paretoView(List<Result> results) {
+        StringBuilder view = new StringBuilder();
+        results.stream().map(r -> r.roster).distinct().forEach(roster -> {
+            view.append(roster).append('\n');
+            results.stream()
+                    .filter(r -> r.roster.equals(roster))
+                    .sorted(Comparator.comparingLong(r -> r.wallMillis))
+                    .forEach(r -> view.append(String.format("  %s %-20s %8dms %6d missing %6.2f happiness%n",
+                            r.pareto ? "*" : " ", r.configuration, r.wallMillis, r.missing, r.happinessMean)));
+        });
+        return view.toString();
+    }
+
+    public static List<Result> readResults(File file) throws IOException {
+        return Files.readAllLines(file.toPath()).stream()
+                .skip(1)
+                .filter(l -> !l.trim().isEmpty())
+                .map(Result::fromCsv)
+                .collect(toList());
+    }
+
+    public static void writeResults(File file, List<Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath()))) {
+            out.println(HEADER);
+            results.forEach(r -> out.println(r.toCsv()));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File resultsFile = new File(args.length > 0 ? args[0] : "benchmark-results.csv");
+        File baselineFile = args.length > 1 ? new File(args[1]) : null;
+
+        List<Roster> rosters = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            rosters.add(Roster.load(new File(args[i])));
+        }
+        for (String size : System.getProperty("benchmark.synthetic", "500,2000,5000").split(",")) {
+            if (!size.trim().isEmpty()) {
+                int numStudents = Integer.parseInt(size.trim());
+                rosters.add(RosterGenerator.generate("synthetic-" + numStudents, numStudents, numStudents));
+            }
+        }
+
+        SolverBenchmark benchmark = new SolverBenchmark(CONFIGURATIONS, Integer.getInteger("benchmark.repeats", 3));
+        List<Result> results = benchmark.run(rosters);
+        writeResults(resultsFile, results);
+        System.out.println(paretoView(results));
+
+        if (baselineFile != null && baselineFile.isFile()) {
+            List<String> regressions = findRegressions(results, readResults(baselineFile));
+            if (!regressions.isEmpty()) {
+                System.out.println("Regressions against " + baselineFile + ":");
+                regressions.forEach(r -> System.out.println("  " + r));
+                System.exit(1);
+            }
+            System.out.println("No regressions against " + baselineFile + ".");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package us.pojo.scheduling.registration;
+
+public class Reservation {
+	public enum Status {
+		RESERVED, FULL, ALREADY_SCHEDULED, UNKNOWN_CLASS, NOT_ELIGIBLE, INVALID
+	}
+
+	private final String requestId;
+	private final String student;
+	private final String className;
+	private final Status status;
+	private final Integer session;
+
+	public Reservation(String requestId, String student, String className, Status status, Integer session) {
+		this.requestId = requestId;
+		this.student = student;
+		this.className = className;
+		this.status = status;
+		this.session = session;
+	}
+
+	public String getRequestId() {
+		return requestId;
+	}
+
+	public String getStudent() {
+		return student;
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * The 1 based session that was reserved.
+	 */
+	public Integer getSession() {
+		return session;
+	}
+}
@@ -0,0 +1,74 @@
+package us.pojo.scheduling.registration;
+
+public class ReservationRequest {
+	private String requestId;
+	private String firstName;
+	private String lastName;
+	private int grade;
+	private String teacher;
+	private String className;
+	private Integer session;
+
+	public String getRequestId() {
+		return requestId;
+	}
+
+	public void setRequestId(String requestId) {
+		this.requestId = requestId;
+	}
+
+	public String getFirstName() {
+		return firstName;
+	}
+
+	public void setFirstName(String firstName) {
+		this.firstName = firstName;
+	}
+
+	public String getLastName() {
+		return lastName;
+	}
+
+	public void setLastName(String lastName) {
+		this.lastName = lastName;
+	}
+
+	public int getGrade() {
+		return grade;
+	}
+
+	public void setGrade(int grade) {
+		this.grade = grade;
+	}
+
+	public String getTeacher() {
+		return teacher;
+	}
+
+	public void setTeacher(String teacher) {
+		this.teacher = teacher;
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public void setClassName(String className) {
+		this.className = className;
+	}
+
+	/**
+	 * The 1 based session to reserve, or null for whichever session has room.
+	 */
+	public Integer getSession() {
+		return session;
+	}
+
+	public void setSession(Integer session) {
+		this.session = session;
+	}
+
+	public String getStudentName() {
+		return firstName + " " + lastName;
+	}
+}
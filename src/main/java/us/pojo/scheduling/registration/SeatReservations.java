@@ -0,0 +1,225 @@
+package us.pojo.scheduling.registration;
+
+import static java.util.stream.Collectors.joining;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+import us.pojo.scheduling.Class;
+import us.pojo.scheduling.ClassNameResolver;
+import us.pojo.scheduling.Student;
+
+/**
+ * Hands out seats as students register instead of after sign-up has closed.
+ * <p>
+ * Nothing here takes a lock. Each class keeps an atomic count of the seats left in each session, and each student's
+ * sessions are an immutable array that is swapped in with compare-and-set, so two requests only ever retry when they
+ * race for the last seat of the same session or for the same student. Requests are remembered by their id, so a
+ * browser that resubmits gets the same answer back instead of a second seat.
+ * <p>
+ * {@link #exportAssignments()} writes the reservations in the same format as assignments.csv, which can be passed to the
+ * batch scheduler as existing assignments so that everyone keeps the seats they reserved.
+ */
+public class SeatReservations {
+	private static class ClassSeats {
+		final Class clazz;
+		final AtomicIntegerArray remaining;
+
+		ClassSeats(Class clazz) {
+			this.clazz = clazz;
+			this.remaining = new AtomicIntegerArray(clazz.periods.size());
+			for (int p = 0; p < clazz.periods.size(); p++) {
+				remaining.set(p, Math.max(0, clazz.getPeriod(p).maxStudents - clazz.getPeriod(p).students.size()));
+			}
+		}
+
+		boolean claim(int period) {
+			while (true) {
+				int left = remaining.get(period);
+				if (left <= 0) {
+					return false;
+				}
+				if (remaining.compareAndSet(period, left, left - 1)) {
+					return true;
+				}
+			}
+		}
+
+		void release(int period) {
+			remaining.incrementAndGet(period);
+		}
+	}
+
+	private static class StudentSeats {
+		final String firstName;
+		final String lastName;
+		final int grade;
+		final String teacher;
+		final AtomicReference<String[]> sessions;
+
+		StudentSeats(ReservationRequest request, int numPeriods) {
+			this.firstName = request.getFirstName();
+			this.lastName = request.getLastName();
+			this.grade = request.getGrade();
+			this.teacher = request.getTeacher();
+			this.sessions = new AtomicReference<>(new String[numPeriods]);
+		}
+
+		boolean isInFirstGrade() {
+			return grade == 1 || (teacher != null && teacher.startsWith("1"));
+		}
+
+		boolean isInClass(String className) {
+			return Arrays.asList(sessions.get()).contains(className);
+		}
+
+		/**
+		 * Puts the student in the class for the period, unless the period is taken or they're already in the class.
+		 */
+		boolean take(int period, String className) {
+			while (true) {
+				String[] current = sessions.get();
+				if (current[period] != null || Arrays.asList(current).contains(className)) {
+					return false;
+				}
+				String[] updated = current.clone();
+				updated[period] = className;
+				if (sessions.compareAndSet(current, updated)) {
+					return true;
+				}
+			}
+		}
+
+		void clear(int period, String className) {
+			while (true) {
+				String[] current = sessions.get();
+				if (!className.equals(current[period])) {
+					return;
+				}
+				String[] updated = current.clone();
+				updated[period] = null;
+				if (sessions.compareAndSet(current, updated)) {
+					return;
+				}
+			}
+		}
+	}
+
+	private final Map<String, ClassSeats> classes = new TreeMap<>();
+	private final Map<String, StudentSeats> students = new ConcurrentHashMap<>();
+	private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+	private final int numPeriods;
+	private final ClassNameResolver resolver;
+
+	public SeatReservations(Map<String, Class> classes) {
+		classes.forEach((name, c) -> this.classes.put(name, new ClassSeats(c)));
+		this.resolver = new ClassNameResolver(classes);
+		this.numPeriods = classes.values().stream().findFirst().map(c -> c.periods.size()).orElse(0);
+	}
+
+	/**
+	 * Reserves a seat. Sending the same request id again returns the original reservation. Requests without an id, the
+	 * student's first and last name, or a grade are invalid, since the batch run needs all of them to use the seat.
+	 */
+	public Reservation reserve(ReservationRequest request) {
+		if (StringUtils.isAnyBlank(request.getRequestId(), request.getFirstName(), request.getLastName()) || request.getGrade() < 1) {
+			return new Reservation(request.getRequestId(), request.getStudentName(), request.getClassName(), Reservation.Status.INVALID, null);
+		}
+		return reservations.computeIfAbsent(request.getRequestId(), id -> doReserve(request));
+	}
+
+	private Reservation doReserve(ReservationRequest request) {
+		// the server runs for the whole registration period, so class names sent by clients aren't cached
+		String className = resolver.lookup(request.getClassName()).orElse(null);
+		if (className == null) {
+			return result(request, className, Reservation.Status.UNKNOWN_CLASS, -1);
+		}
+		ClassSeats seats = classes.get(className);
+		// the first request for a student decides their grade, so later requests can't move them into other sessions
+		StudentSeats student = students.computeIfAbsent(request.getStudentName(), name -> new StudentSeats(request, numPeriods));
+		if (seats.clazz.minGrade > 1 && student.grade < seats.clazz.minGrade) {
+			return result(request, className, Reservation.Status.NOT_ELIGIBLE, -1);
+		}
+
+		int[] sessions = Student.getSessions(student.isInFirstGrade(), numPeriods).toArray();
+		if (request.getSession() != null) {
+			int requested = request.getSession() - 1;
+			if (IntStream.of(sessions).noneMatch(p -> p == requested)) {
+				return result(request, className, Reservation.Status.NOT_ELIGIBLE, -1);
+			}
+			sessions = new int[] { requested };
+		}
+
+		if (student.isInClass(className)) {
+			return result(request, className, Reservation.Status.ALREADY_SCHEDULED, -1);
+		}
+
+		boolean studentHadRoom = false;
+		for (int period : sessions) {
+			if (student.sessions.get()[period] != null) {
+				continue;
+			}
+			studentHadRoom = true;
+			if (seats.claim(period)) {
+				if (student.take(period, className)) {
+					return result(request, className, Reservation.Status.RESERVED, period);
+				}
+				// lost a race with another request for the same student, give the seat back
+				seats.release(period);
+				if (student.isInClass(className)) {
+					return result(request, className, Reservation.Status.ALREADY_SCHEDULED, -1);
+				}
+			}
+		}
+		return result(request, className, studentHadRoom ? Reservation.Status.FULL : Reservation.Status.ALREADY_SCHEDULED, -1);
+	}
+
+	private Reservation result(ReservationRequest request, String className, Reservation.Status status, int period) {
+		return new Reservation(request.getRequestId(), request.getStudentName(), className != null ? className : request.getClassName(), status,
+				period >= 0 ? period + 1 : null);
+	}
+
+	/**
+	 * Gives up a reserved seat. Cancelling a request that doesn't hold a seat does nothing.
+	 */
+	public boolean cancel(String requestId) {
+		Reservation r = reservations.remove(requestId);
+		if (r == null || r.getStatus() != Reservation.Status.RESERVED) {
+			return false;
+		}
+		StudentSeats student = students.get(r.getStudent());
+		int period = r.getSession() - 1;
+		if (student != null && r.getClassName().equals(student.sessions.get()[period])) {
+			student.clear(period, r.getClassName());
+			classes.get(r.getClassName()).release(period);
+		}
+		return true;
+	}
+
+	public Map<String, int[]> getRemainingSeats() {
+		Map<String, int[]> remaining = new TreeMap<>();
+		classes.forEach((name, seats) -> remaining.put(name, IntStream.range(0, seats.remaining.length()).map(seats.remaining::get).toArray()));
+		return remaining;
+	}
+
+	public byte[] exportAssignments() {
+		String sessionHeader = IntStream.range(1, numPeriods + 1).mapToObj(i -> "Session " + i).collect(joining(","));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (PrintWriter export = new PrintWriter(out)) {
+			export.println("Last Name,First Name,Grade,Teacher," + sessionHeader);
+			students.values().forEach(s -> export.println("\"" + s.lastName + "\",\"" + s.firstName + "\"," + s.grade + ",\""
+					+ StringUtils.defaultString(s.teacher) + "\","
+					+ Arrays.stream(s.sessions.get()).map(c -> "\"" + StringUtils.defaultString(c) + "\"").collect(joining(","))));
+		}
+		return out.toByteArray();
+	}
+}
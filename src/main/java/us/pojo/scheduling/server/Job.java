@@ -0,0 +1,122 @@
+package us.pojo.scheduling.server;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import us.pojo.scheduling.aws.Request;
+
+public class Job {
+	public enum State {
+		QUEUED, PARSING, SOLVING, ARCHIVING, DONE, FAILED
+	}
+
+	private final String id;
+	private volatile State state = State.QUEUED;
+	private final long submittedAt = System.currentTimeMillis();
+	private volatile long startedAt;
+	private volatile long finishedAt;
+	private volatile long parseMillis;
+	private volatile long solveMillis;
+	private volatile long archiveMillis;
+	private volatile long studentsMissingAssignments = -1;
+	private volatile String message;
+	private volatile String error;
+	private volatile Request request;
+
+	public Job(String id, Request request) {
+		this.id = id;
+		this.request = request;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public void setState(State state) {
+		this.state = state;
+	}
+
+	@JsonIgnore
+	public Request getRequest() {
+		return request;
+	}
+
+	public void clearRequest() {
+		this.request = null;
+	}
+
+	public long getSubmittedAt() {
+		return submittedAt;
+	}
+
+	public long getStartedAt() {
+		return startedAt;
+	}
+
+	public void setStartedAt(long startedAt) {
+		this.startedAt = startedAt;
+	}
+
+	public long getFinishedAt() {
+		return finishedAt;
+	}
+
+	public void setFinishedAt(long finishedAt) {
+		this.finishedAt = finishedAt;
+	}
+
+	public long getQueuedMillis() {
+		return (startedAt > 0 ? startedAt : System.currentTimeMillis()) - submittedAt;
+	}
+
+	public long getParseMillis() {
+		return parseMillis;
+	}
+
+	public void setParseMillis(long parseMillis) {
+		this.parseMillis = parseMillis;
+	}
+
+	public long getSolveMillis() {
+		return solveMillis;
+	}
+
+	public void setSolveMillis(long solveMillis) {
+		this.solveMillis = solveMillis;
+	}
+
+	public long getArchiveMillis() {
+		return archiveMillis;
+	}
+
+	public void setArchiveMillis(long archiveMillis) {
+		this.archiveMillis = archiveMillis;
+	}
+
+	public long getStudentsMissingAssignments() {
+		return studentsMissingAssignments;
+	}
+
+	public void setStudentsMissingAssignments(long studentsMissingAssignments) {
+		this.studentsMissingAssignments = studentsMissingAssignments;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+}
@@ -0,0 +1,306 @@
+package us.pojo.scheduling.server;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import us.pojo.scheduling.Schedule;
+import us.pojo.scheduling.Scheduling;
+import us.pojo.scheduling.aws.Request;
+import us.pojo.scheduling.aws.ResultArchive;
+import us.pojo.scheduling.aws.SchedulingLambda;
+import us.pojo.scheduling.registration.Reservation;
+import us.pojo.scheduling.registration.ReservationRequest;
+import us.pojo.scheduling.registration.SeatReservations;
+
+/**
+ * Runs the scheduler as a long lived local service, so that on event day the JVM stays warm between runs and jobs are
+ * queued instead of competing for the machine.
+ * <ul>
+ * <li>POST /jobs with the same JSON payload as the lambda queues a job and returns its status</li>
+ * <li>GET /jobs/{id} returns the job's state and timings</li>
+ * <li>GET /jobs/{id}/result downloads the result zip once the job is done</li>
+ * </ul>
+ * When started with a classes file it also takes registrations as students sign up:
+ * <ul>
+ * <li>POST /registrations reserves a seat and returns the reservation</li>
+ * <li>DELETE /registrations/{request id} gives the seat back</li>
+ * <li>GET /registrations/seats returns the seats left in each session</li>
+ * <li>GET /registrations/assignments downloads the reservations as an assignments file for the batch run</li>
+ * </ul>
+ * Usage: SchedulingServer [port] [results directory] [workers] [queue size] [classes file]
+ * <p>
+ * There's no authentication, anyone who can reach the port can cancel registrations and download schedules. The server
+ * only listens on the loopback address unless -Dscheduling.bind says otherwise, and should only be opened up behind a
+ * proxy that authenticates requests. Finished jobs and their result files are removed after
+ * -Dscheduling.retentionHours (24 by default).
+ */
+public class SchedulingServer {
+	private static final ObjectMapper JSON = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private final HttpServer server;
+	private final ThreadPoolExecutor executor;
+	private final ExecutorService httpExecutor;
+	private final File resultsDir;
+	private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+	private final SeatReservations reservations;
+	private final long retentionMillis;
+	private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor();
+
+	public SchedulingServer(InetAddress bindAddress, int port, File resultsDir, int workers, int queueSize, long retentionMillis, SeatReservations reservations) throws IOException {
+		this.reservations = reservations;
+		this.resultsDir = resultsDir;
+		this.retentionMillis = retentionMillis;
+		if (!resultsDir.isDirectory() && !resultsDir.mkdirs()) {
+			throw new IOException("Unable to create results directory " + resultsDir);
+		}
+		this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize));
+		this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+		server.createContext("/jobs", this::handleJobs);
+		if (reservations != null) {
+			server.createContext("/registrations", this::handleRegistrations);
+		}
+		// registration opens with a burst, so bound the request threads rather than starting one per connection
+		this.httpExecutor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+		server.setExecutor(httpExecutor);
+	}
+
+	public void start() {
+		server.start();
+		long interval = Math.max(TimeUnit.MINUTES.toMillis(1), Math.min(retentionMillis / 4, TimeUnit.HOURS.toMillis(1)));
+		cleaner.scheduleWithFixedDelay(this::removeExpiredJobs, 0, interval, TimeUnit.MILLISECONDS);
+	}
+
+	public void stop() {
+		server.stop(0);
+		// the server doesn't stop the executor it was given, and its threads would keep the JVM running
+		httpExecutor.shutdown();
+		cleaner.shutdown();
+		executor.shutdown();
+	}
+
+	/**
+	 * Forgets finished jobs once they're older than the retention, along with their result files. Result files left
+	 * behind by an earlier run of the server are removed once they're as old.
+	 */
+	private void removeExpiredJobs() {
+		long expired = System.currentTimeMillis() - retentionMillis;
+		jobs.values().removeIf(job -> {
+			if (job.getFinishedAt() == 0 || job.getFinishedAt() > expired) {
+				return false;
+			}
+			getResultFile(job).delete();
+			return true;
+		});
+		File[] results = resultsDir.listFiles((dir, name) -> name.startsWith("schedule-") && name.endsWith(".zip"));
+		if (results != null) {
+			for (File result : results) {
+				String id = result.getName().replaceAll("^schedule-|\\.zip$", "");
+				if (!jobs.containsKey(id) && result.lastModified() < expired) {
+					result.delete();
+				}
+			}
+		}
+	}
+
+	private void handleJobs(HttpExchange exchange) throws IOException {
+		try {
+			String[] path = exchange.getRequestURI().getPath().replaceAll("^/jobs/?", "").split("/");
+			if ("POST".equals(exchange.getRequestMethod()) && path[0].isEmpty()) {
+				submit(exchange);
+			} else if ("GET".equals(exchange.getRequestMethod()) && path.length == 1 && jobs.containsKey(path[0])) {
+				sendJson(exchange, 200, jobs.get(path[0]));
+			} else if ("GET".equals(exchange.getRequestMethod()) && path.length == 2 && "result".equals(path[1]) && jobs.containsKey(path[0])) {
+				sendResult(exchange, jobs.get(path[0]));
+			} else {
+				sendError(exchange, 404, "Not found");
+			}
+		} catch (Exception e) {
+			sendError(exchange, 500, e.toString());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void handleRegistrations(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getPath().replaceAll("^/registrations/?", "");
+			String method = exchange.getRequestMethod();
+			if ("POST".equals(method) && path.isEmpty()) {
+				reserve(exchange);
+			} else if ("DELETE".equals(method) && !path.isEmpty()) {
+				if (reservations.cancel(path)) {
+					sendJson(exchange, 200, Collections.singletonMap("cancelled", path));
+				} else {
+					sendError(exchange, 404, "No reservation for " + path);
+				}
+			} else if ("GET".equals(method) && "seats".equals(path)) {
+				sendJson(exchange, 200, reservations.getRemainingSeats());
+			} else if ("GET".equals(method) && "assignments".equals(path)) {
+				byte[] csv = reservations.exportAssignments();
+				exchange.getResponseHeaders().set("Content-Type", "text/csv");
+				exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"assignments.csv\"");
+				exchange.sendResponseHeaders(200, csv.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(csv);
+				}
+			} else {
+				sendError(exchange, 404, "Not found");
+			}
+		} catch (Exception e) {
+			sendError(exchange, 500, e.toString());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void reserve(HttpExchange exchange) throws IOException {
+		ReservationRequest request;
+		try (InputStream body = exchange.getRequestBody()) {
+			request = JSON.readValue(body, ReservationRequest.class);
+		} catch (IOException e) {
+			sendError(exchange, 400, "Unable to parse request: " + e.getMessage());
+			return;
+		}
+		Reservation r = reservations.reserve(request);
+		int status;
+		switch (r.getStatus()) {
+		case RESERVED:
+			status = 200;
+			break;
+		case FULL:
+		case ALREADY_SCHEDULED:
+			status = 409;
+			break;
+		case UNKNOWN_CLASS:
+			status = 404;
+			break;
+		default:
+			status = 400;
+		}
+		sendJson(exchange, status, r);
+	}
+
+	private void submit(HttpExchange exchange) throws IOException {
+		Request request;
+		try (InputStream body = exchange.getRequestBody()) {
+			request = JSON.readValue(body, Request.class);
+		} catch (IOException e) {
+			sendError(exchange, 400, "Unable to parse request: " + e.getMessage());
+			return;
+		}
+
+		Job job = new Job(UUID.randomUUID().toString(), request);
+		jobs.put(job.getId(), job);
+		try {
+			executor.execute(() -> process(job));
+		} catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			sendError(exchange, 503, "Too many jobs queued, try again later.");
+			return;
+		}
+		sendJson(exchange, 202, job);
+	}
+
+	private void process(Job job) {
+		job.setStartedAt(System.currentTimeMillis());
+		try {
+			job.setState(Job.State.PARSING);
+			long start = System.currentTimeMillis();
+			Scheduling scheduling = SchedulingLambda.createScheduling(job.getRequest());
+			job.setParseMillis(System.currentTimeMillis() - start);
+
+			job.setState(Job.State.SOLVING);
+			start = System.currentTimeMillis();
+			Schedule s = scheduling.run();
+			job.setSolveMillis(System.currentTimeMillis() - start);
+			job.setMessage(s.getMsg());
+			job.setStudentsMissingAssignments(s.getStudentsMissingAssignments());
+
+			job.setState(Job.State.ARCHIVING);
+			start = System.currentTimeMillis();
+			Files.write(getResultFile(job).toPath(), ResultArchive.zip(s, job.getRequest()));
+			job.setArchiveMillis(System.currentTimeMillis() - start);
+			job.setState(Job.State.DONE);
+		} catch (Exception e) {
+			job.setError(e.toString());
+			job.setState(Job.State.FAILED);
+		} finally {
+			job.clearRequest();
+			job.setFinishedAt(System.currentTimeMillis());
+		}
+	}
+
+	private File getResultFile(Job job) {
+		return new File(resultsDir, "schedule-" + job.getId() + ".zip");
+	}
+
+	private void sendResult(HttpExchange exchange, Job job) throws IOException {
+		File result = getResultFile(job);
+		if (job.getState() != Job.State.DONE || !result.isFile()) {
+			sendError(exchange, 409, "Job " + job.getId() + " is " + job.getState());
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", "application/zip");
+		exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + result.getName() + "\"");
+		exchange.sendResponseHeaders(200, result.length());
+		try (OutputStream out = exchange.getResponseBody()) {
+			Files.copy(result.toPath(), out);
+		}
+	}
+
+	private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+		byte[] bytes = JSON.writeValueAsBytes(body);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		sendJson(exchange, status, Collections.singletonMap("error", message));
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		File resultsDir = new File(args.length > 1 ? args[1] : "results");
+		int workers = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		int queueSize = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+		InetAddress bindAddress = System.getProperty("scheduling.bind") != null ? InetAddress.getByName(System.getProperty("scheduling.bind")) : InetAddress.getLoopbackAddress();
+		long retentionMillis = TimeUnit.HOURS.toMillis(Long.getLong("scheduling.retentionHours", 24));
+		SeatReservations reservations = null;
+		if (args.length > 4) {
+			try (InputStream classes = new FileInputStream(args[4])) {
+				reservations = new SeatReservations(Scheduling.parseClasses(classes));
+			}
+		}
+
+		SchedulingServer server = new SchedulingServer(bindAddress, port, resultsDir, workers, queueSize, retentionMillis, reservations);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+		server.start();
+		System.err.println("Scheduling server listening on " + bindAddress.getHostAddress() + ":" + port + ", writing results to " + resultsDir.getAbsolutePath());
+	}
+}